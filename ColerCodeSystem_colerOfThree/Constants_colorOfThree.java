@@ -65,6 +65,18 @@ public final class Constants_colorOfThree {
 	public static final int BLOCPATTERN_WHITE_GREEN = 14;
 	public static final int BLOCPATTERN_WHITE_WHITE = 15;
 	public static final int BLOCPATTERN_SPACE = 16;
+	//色判断のしきい値 S(彩度)がこれ未満なら白または無彩色
+	public static final int SATURATION_THRESHOLD = 100;
+	//色判断のしきい値 V(明度)がこれ以上かつ低彩度なら白
+	public static final int WHITE_VALUE_THRESHOLD = 150;
+	//色判断のしきい値 V(明度)がこれ未満なら黒
+	public static final int BLACK_VALUE_THRESHOLD = 100;
+	//色相の区切り(度数) 赤、緑、青の順
+	public static final int[] COLOR_HUE_BOUNDARIES = { 0, 80, 148, 258 };
+	//色相の区切りごとの記号
+	public static final byte[] COLOR_HUE_SYMBOLS = { 1, 2, 3 };
+	//白の記号
+	public static final byte COLOR_SYMBOL_WHITE = 4;
 	//コード情報(パネルのコード番号)における変換値
 	public static final int PANELPATTERN_RED_RED = 0;
 	public static final int PANELPATTERN_GREEN_GREEN = 1;
@@ -85,6 +97,39 @@ public final class Constants_colorOfThree {
 	public static final double CON = 131.0;
 	public static final double SAT = 255.0;
 	public static final double WHITE = 5436.0;
+	//カメラ設定値のずれを確認する間隔(フレーム数)
+	public static final int CAMERA_CHECK_INTERVAL = 100;
+	//カメラ設定値のずれを許容する幅
+	public static final double CAMERA_SETTING_TOLERANCE = 0.5;
+	//自動露出で露出を変更する間隔(フレーム数、変更後にカメラが追従するまで待つ)
+	public static final int AUTO_EXPOSURE_INTERVAL = 10;
+	//自動露出で露出を下げる白飛びした画素(V=255付近)の割合
+	public static final double AUTO_EXPOSURE_CLIP_RATIO = 0.02;
+	//白飛びとみなすV(明度)
+	public static final int AUTO_EXPOSURE_CLIP_VALUE = 250;
+	//自動露出で露出を上げるマーカのV(明度)の平均
+	public static final int AUTO_EXPOSURE_TARGET_VALUE = 110;
+	//自動露出の露出の範囲
+	public static final double AUTO_EXPOSURE_MIN = -11.0;
+	public static final double AUTO_EXPOSURE_MAX = -1.0;
+	//縮小画像でのマーカ検出の縮小回数(0:利用しない 1:1/2 2:1/4)
+	public static final byte PYRAMID_LEVEL = 0;
+	//縮小画像で見つけた候補の探索範囲の広げ幅(縮小画像でのピクセル数)
+	public static final byte PYRAMID_REGION_MARGIN = 4;
+	//1画面に並べて表示するパネルの枚数(1:1枚ずつ切り替えて表示)
+	public static final byte TILED_PANEL_COUNT = 1;
+	//並べて表示するパネル同士の間隔(ピクセル数、黒で塗りつぶし輪郭を分離する)
+	public static final byte TILE_GAP = 40;
+	//パネルの受信を確定する各ブロックの得票差(1位と2位の得票数の差、0:複数フレームの投票を行わない)
+	//1なら従来通り全ブロックを読めた最初のフレームで確定し、読み誤りは後のフレームで補える。
+	//2以上にすると読み誤りには強くなるが、きれいに写ったパネルでも最低その枚数のフレームを待つため受信に時間がかかる
+	public static final byte PANEL_VOTE_MARGIN = 1;
+	//受信処理時間の途中経過を表示する間隔(フレーム数、0:表示しない)
+	public static final int LATENCY_REPORT_INTERVAL = 300;
+	//送信画像の1秒あたりの切り替え回数(上限は画面のリフレッシュレート)
+	public static final double PANEL_RATE = 2.5;
+	//画面のリフレッシュレートを取得できない場合(画面のない環境等)のリフレッシュレート
+	public static final int DEFAULT_REFRESH_RATE = 60;
 	// 辺の数
 	public static final byte SIDE_OF_THE_RECTANGLE = 4;
 	// コードの枚数
@@ -1,18 +1,18 @@
-import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
 import javax.imageio.ImageIO;
-import javax.swing.JFrame;
 
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
@@ -24,6 +24,7 @@ import org.opencv.imgproc.Imgproc;
  * getDecodeList()でListを外部クラスに渡し、マッチテストは外部クラスで行う。<br>
  * VisibleLightReceiver2と対応しており、VisibleLightReceiver1と互換性を持たない。
  * フィールド変数であるdivisionの値をVisibleLightReceiver2のdivisionと揃えること。<br>
+ * setTiledPanelCount()で2枚以上を指定すると、複数のパネルを格子状に並べて1画面で表示する。<br>
  *
  * @see VisibleLightReceiver2_colorOfThree
  * @author Ogi
@@ -31,23 +32,19 @@ import org.opencv.imgproc.Imgproc;
  */
 public class CreateTransmisstionImage2_colorOfThree extends Thread {
 
-	private JFrame transmisstionImageFrame;
+	private PreviewSink_colorOfThree transmisstionImageSink;// 送信画像の表示先(nullの場合は表示しない)
 	private BufferedImage readImage;
 	private Mat[] markerImage;
 	// private Mat markerImage2;
 	// private Mat markerImage3;
 	// private Mat markerImage4;
 	// private Mat markerImage5;
-	private int dimensionSetSize_Rows;
-	private int dimensionSetSize_cols;
 	private int codeNo;
 	private File imgFileIn;
 	private File imgFileOut;
 	private String format = (Constants_colorOfThree.FORMAT);
 	private String inputFileName = (Constants_colorOfThree.IN_IMG_PATH);
 	private String outputFileName = (Constants_colorOfThree.OUT_IMG_PATH);
-	private ImageDrawing_colorOfThree imageDrawing;
-	private ImageDrawing_colorOfThree transmisstionImagePanel;
 	private ArrayList<String> transmissionList;
 	private HashMap<Integer, String> colorPatternMap;
 	private byte[] outImgBytes;// 画像のバイナリデータ
@@ -59,9 +56,27 @@ public class CreateTransmisstionImage2_colorOfThree extends Thread {
 	private boolean codeMakeCheck;
 	private boolean panelLoopF;
 	private boolean key;
+	private int tiledPanelCount;// 1画面に並べて表示するパネルの枚数
+	private Mat tiledImage;// パネルを並べた送信画像(1枚ずつ表示する場合はnull)
+	private BufferedImage[] displayImages;// codeNoごとの表示用に変換済みの送信画像(colorEncode後は変化しないため使い回す)
+	private ImageDrawing_colorOfThree imageConverter;// Mat型からBufferedImage型への変換用
+	private PanelScheduler_colorOfThree panelScheduler;// 送信画像の切り替え時刻
 
 	public CreateTransmisstionImage2_colorOfThree() {
+		this(new SwingPreviewSink_colorOfThree("送信画像ver2", Constants_colorOfThree.ROW_MARGIN,
+				Constants_colorOfThree.COL_MARGIN));// 加工画像用ウィンドウフレーム,設定
+	}
+
+	/**
+	 * 送信画像の表示先を指定する場合に利用する<br>
+	 * 表示先にnullを渡すとウィンドウを生成せず、カラー・コードの生成と切り替えのみを行う。
+	 *
+	 * @param transmisstionImageSink
+	 *            送信画像の表示先(表示しない場合はnull)
+	 */
+	public CreateTransmisstionImage2_colorOfThree(PreviewSink_colorOfThree transmisstionImageSink) {
 		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);// Opencvの利用のため
+		this.transmisstionImageSink = transmisstionImageSink;
 		createCodeSystemPresetting();
 		flagCheckSet();
 		fileChecker();
@@ -69,6 +84,99 @@ public class CreateTransmisstionImage2_colorOfThree extends Thread {
 		Pattern(colorPatternMap);
 		division = colorEncodeSize(outImgBytes);// コードサイズ設定
 		codeSetup();
+		displayImages = new BufferedImage[markerImage.length];
+		imageConverter = new ImageDrawing_colorOfThree();
+		panelScheduler = new PanelScheduler_colorOfThree(Constants_colorOfThree.PANEL_RATE, markerImage.length);
+		setTiledPanelCount(Constants_colorOfThree.TILED_PANEL_COUNT);
+	}
+
+	/**
+	 * 1画面に並べて表示するパネルの枚数を設定する<br>
+	 * 2枚以上の場合、パネルを格子状に並べ、パネル同士の間はTILE_GAPの幅で黒く塗りつぶす。
+	 * 各パネルはコード情報(№)のブロックでパネル番号を持つため、受信側は1フレームで複数のパネルを読み取れる。<br>
+	 * 送信中は変更しないこと。
+	 *
+	 * @param tiledPanelCount
+	 *            並べるパネルの枚数(1:1枚ずつ切り替えて表示 最大はCODE_NUMBER)
+	 */
+	public void setTiledPanelCount(int tiledPanelCount) {
+		this.tiledPanelCount = Math.max(1, Math.min(tiledPanelCount, markerImage.length));
+		clearDisplayImages();// 並べ方が変わるため変換し直す
+		if (tiledImage != null) {
+			tiledImage.release();
+			tiledImage = null;
+		}
+		if (this.tiledPanelCount > 1) {
+			int tileCols = (int) Math.ceil(Math.sqrt(this.tiledPanelCount));
+			int tileRows = (this.tiledPanelCount + tileCols - 1) / tileCols;
+			int gap = Constants_colorOfThree.TILE_GAP;
+			tiledImage = new Mat(tileRows * (markerImage[0].rows() + gap) + gap,
+					tileCols * (markerImage[0].cols() + gap) + gap, markerImage[0].type(), new Scalar(0, 0, 0));
+		}
+	}
+
+	/**
+	 * 送信画像の1秒あたりの切り替え回数を設定する(上限は画面のリフレッシュレート)
+	 *
+	 * @param panelRate
+	 *            1秒あたりの切り替え回数
+	 * @see PanelScheduler_colorOfThree#setPanelRate(double)
+	 */
+	public void setPanelRate(double panelRate) {
+		panelScheduler.setPanelRate(panelRate);
+	}
+
+	/**
+	 * 送信画像の切り替え時刻と描画し終えた時刻の記録を返す
+	 *
+	 * @return 送信画像の切り替え時刻
+	 */
+	public PanelScheduler_colorOfThree getPanelScheduler() {
+		return panelScheduler;
+	}
+
+	/**
+	 * codeNo枚目から並べる枚数分のパネルをtiledImageに格子状に配置する(最後のパネルの次は最初のパネルに戻る)
+	 */
+	private void tilePanels() {
+		int tileCols = (int) Math.ceil(Math.sqrt(tiledPanelCount));
+		int gap = Constants_colorOfThree.TILE_GAP;
+		tiledImage.setTo(new Scalar(0, 0, 0));
+		for (int i = 0; i < tiledPanelCount; i++) {
+			Mat panel = markerImage[(codeNo + i) % markerImage.length];
+			int x = gap + (i % tileCols) * (panel.cols() + gap);
+			int y = gap + (i / tileCols) * (panel.rows() + gap);
+			Mat tile = tiledImage.submat(new Rect(x, y, panel.cols(), panel.rows()));
+			panel.copyTo(tile);
+			tile.release();
+		}
+	}
+
+	/**
+	 * codeNo枚目からの送信画像を表示用に変換したものを返す<br>
+	 * パネルはcolorEncode後に変化しないため、codeNoごとに一度だけ変換(並べる場合は配置も)し、以降は変換済みの画像を使い回す。
+	 *
+	 * @return 画面の表示形式に合わせた送信画像
+	 */
+	private BufferedImage displayImage() {
+		if (displayImages[codeNo] == null) {
+			Mat image = markerImage[codeNo];
+			if (tiledImage != null) {
+				tilePanels();
+				image = tiledImage;
+			}
+			displayImages[codeNo] = ImageDrawing_colorOfThree.toCompatibleImage(imageConverter.matToBufferedImage(image));
+		}
+		return displayImages[codeNo];
+	}
+
+	/**
+	 * 表示用に変換済みの送信画像を破棄する(パネルを描き直した場合、並べ方を変えた場合)
+	 */
+	private void clearDisplayImages() {
+		if (displayImages != null) {
+			Arrays.fill(displayImages, null);
+		}
 	}
 
 	/**
@@ -79,10 +187,7 @@ public class CreateTransmisstionImage2_colorOfThree extends Thread {
 		codeNo = 0;
 		for (int i = 0; i <= 4; i++) {
 			markerImage[i] = Imgcodecs.imread(Constants_colorOfThree.MARK2);
-			dimensionSetSize_Rows = (markerImage[i].rows() + Constants_colorOfThree.ROW_MARGIN);
-			dimensionSetSize_cols = (markerImage[i].cols() + Constants_colorOfThree.COL_MARGIN);
 		}
-		transmisstionImageFrame.setSize(new Dimension(dimensionSetSize_Rows, dimensionSetSize_cols));
 		if ((division != 0)) {
 			System.out.println("今回のデータ量は" + outImgBytes.length + "であり、全ブロック数は" + (outImgBytes.length * Constants_colorOfThree.BLOCK_OF_BYTE) + "個です。"
 					+ "今回は固定で行うため12×12のコードを5枚でサイズを固定しております。");
@@ -142,16 +247,8 @@ public class CreateTransmisstionImage2_colorOfThree extends Thread {
 	 * 各種初期設定
 	 */
 	private void createCodeSystemPresetting() {
-		// 加工画像用ウィンドウフレーム,設定
-		transmisstionImageFrame = new JFrame("送信画像ver2");
-		transmisstionImageFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
-		// 各種画像を載せるパネル
-		transmisstionImagePanel = new ImageDrawing_colorOfThree();
-		transmisstionImageFrame.setContentPane(transmisstionImagePanel);
-
 		imgFileIn = new File(inputFileName);
 		imgFileOut = new File(outputFileName);
-		imageDrawing = new ImageDrawing_colorOfThree();
 		outImgBytes = new byte[fileChecker(imgFileIn)];
 
 		// エンコードを行う情報リスト
@@ -230,10 +327,11 @@ public class CreateTransmisstionImage2_colorOfThree extends Thread {
 	 * @see CreateTransmisstionImage2_colorOfThree#stopRunning()
 	 */
 	public void run() {
+		panelScheduler.start();
 		while (key) {
 			createImageLoop();
 		}
-
+		System.out.println(panelScheduler);
 	}
 
 	/**
@@ -243,7 +341,9 @@ public class CreateTransmisstionImage2_colorOfThree extends Thread {
 	 * @see CreateTransmisstionImage2_colorOfThree#stopRunning()
 	 */
 	public void startRunning() {
-		transmisstionImageFrame.setVisible(true);
+		if (transmisstionImageSink != null) {
+			transmisstionImageSink.open();
+		}
 		new Thread(this).start();
 		key = true;
 	}
@@ -255,7 +355,9 @@ public class CreateTransmisstionImage2_colorOfThree extends Thread {
 	 * @see CreateTransmisstionImage2_colorOfThree#startRunning()
 	 */
 	public void stopRunning() {
-		transmisstionImageFrame.setVisible(false);
+		if (transmisstionImageSink != null) {
+			transmisstionImageSink.close();
+		}
 		key = false;
 		panelLoopF = false;
 		// transmissionList.clear();
@@ -656,9 +758,9 @@ public class CreateTransmisstionImage2_colorOfThree extends Thread {
 						loopCount++;
 					}
 				}
-				BufferedImage bufferedImageTemp = imageDrawing.matToBufferedImage(markerImage[codeNo]);
-				transmisstionImagePanel.setimage(bufferedImageTemp);// 変換した画像をPanelに追加
-				transmisstionImagePanel.repaint();// パネルを再描画
+				if (transmisstionImageSink != null) {
+					transmisstionImageSink.show(markerImage[codeNo]);
+				}
 			}
 			if (code0 == true && code1 == true && code2 == true && code3 == true && code4 == true) {
 				System.out.print("コードcomplete");
@@ -674,6 +776,8 @@ public class CreateTransmisstionImage2_colorOfThree extends Thread {
 		if (codeMakeCheck) {
 			colorEncode(markerImage, 42, 42, 457, 457, division);
 			codeMakeCheck = false;
+			clearDisplayImages();
+			panelScheduler.start();// エンコードにかかった時間を切り替えの遅れとしない
 //			transmissionList.forEach(s -> {
 //				System.out.println(s);
 //			});
@@ -684,16 +788,13 @@ public class CreateTransmisstionImage2_colorOfThree extends Thread {
 			panelLoopF = true;
 		}
 
-		BufferedImage bufferedImageTemp = imageDrawing.matToBufferedImage(markerImage[codeNo]);
-		transmisstionImagePanel.setimage(bufferedImageTemp);// 変換した画像をPanelに追加
-		transmisstionImageFrame.repaint();
-		try {
-			Thread.sleep(400);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+		BufferedImage image = transmisstionImageSink != null ? displayImage() : null;// 変換済みの画像を切り替えるのみ
+		long deadline = panelScheduler.awaitNextDeadline();
+		if (transmisstionImageSink != null) {
+			panelScheduler.recordPaint(codeNo, deadline, transmisstionImageSink.showAndWait(image));
 		}
 		//System.out.println(transmissionList.size());
-		codeNo++;
+		codeNo += tiledPanelCount;
 	}
 
 }
@@ -0,0 +1,135 @@
+/**
+ * HSV値からカラー・コードの記号を求める参照テーブル<br>
+ * 色判断のしきい値から一度だけテーブルを作成し、以降は1ブロックにつき配列の参照のみで記号を求める。<br>
+ * H,S,Vはそれぞれしきい値で区切った段階に量子化してあり、テーブルの大きさは段階数の積となる。<br>
+ * 判断の順番は従来のif文と同じく、白(低彩度・高明度)、黒(低明度)、色相の順に行う。
+ *
+ * @see VisibleLightReceiver2_colorOfThree
+ * @author Ogi
+ * @version 1.0
+ */
+public class HsvSymbolTable_colorOfThree {
+
+	// どの色にも当てはまらない場合の記号
+	public static final byte SYMBOL_ERROR = -1;
+
+	private byte[] hueLevel;// H(色相)の段階
+	private byte[] saturationLevel;// S(彩度)の段階
+	private byte[] valueLevel;// V(明度)の段階
+	private int saturationLevels;
+	private int valueLevels;
+	private byte[] symbolTable;// 段階の組み合わせごとの記号
+
+	/**
+	 * 黒の判断を行わないテーブルを作成する
+	 *
+	 * @param hueBoundaries
+	 *            色相の区切り(度数、昇順)。hueBoundaries[k]以上hueBoundaries[k+1]未満がhueSymbols[k]となる
+	 * @param hueSymbols
+	 *            色相ごとの記号
+	 * @param whiteSymbol
+	 *            白の記号
+	 */
+	public HsvSymbolTable_colorOfThree(int[] hueBoundaries, byte[] hueSymbols, byte whiteSymbol) {
+		this(hueBoundaries, hueSymbols, whiteSymbol, false, SYMBOL_ERROR);
+	}
+
+	/**
+	 * 黒の判断を行うテーブルを作成する
+	 *
+	 * @param hueBoundaries
+	 *            色相の区切り(度数、昇順)。hueBoundaries[k]以上hueBoundaries[k+1]未満がhueSymbols[k]となる
+	 * @param hueSymbols
+	 *            色相ごとの記号
+	 * @param whiteSymbol
+	 *            白の記号
+	 * @param blackSymbol
+	 *            黒の記号
+	 */
+	public HsvSymbolTable_colorOfThree(int[] hueBoundaries, byte[] hueSymbols, byte whiteSymbol, byte blackSymbol) {
+		this(hueBoundaries, hueSymbols, whiteSymbol, true, blackSymbol);
+	}
+
+	private HsvSymbolTable_colorOfThree(int[] hueBoundaries, byte[] hueSymbols, byte whiteSymbol, boolean useBlack,
+			byte blackSymbol) {
+		// 各チャンネルを段階に量子化し、段階ごとの代表値を記憶する(色相は段階番号のみで判断できる)
+		int hueLevels = hueBoundaries.length + 1;
+		hueLevel = new byte[256];
+		for (int h = 0; h < 256; h++) {
+			int level = hueBoundaries.length;// 最後の区切り以上
+			for (int k = 0; k < hueBoundaries.length; k++) {
+				if (h * 2 < hueBoundaries[k]) {
+					level = k;// k=0は最初の区切り未満
+					break;
+				}
+			}
+			hueLevel[h] = (byte) level;
+		}
+		int[] saturationSample = new int[2];
+		saturationLevel = new byte[256];
+		for (int s = 255; s >= 0; s--) {
+			saturationLevel[s] = (byte) (s < Constants_colorOfThree.SATURATION_THRESHOLD ? 0 : 1);
+			saturationSample[saturationLevel[s]] = s;
+		}
+		saturationLevels = saturationSample.length;
+		int[] valueSample = new int[3];
+		valueLevel = new byte[256];
+		for (int v = 255; v >= 0; v--) {
+			if (v < Constants_colorOfThree.BLACK_VALUE_THRESHOLD) {
+				valueLevel[v] = 0;
+			} else if (v < Constants_colorOfThree.WHITE_VALUE_THRESHOLD) {
+				valueLevel[v] = 1;
+			} else {
+				valueLevel[v] = 2;
+			}
+			valueSample[valueLevel[v]] = v;
+		}
+		valueLevels = valueSample.length;
+		// 段階の組み合わせごとに代表値で色を判断しテーブルに格納する
+		symbolTable = new byte[hueLevels * saturationLevels * valueLevels];
+		for (int hl = 0; hl < hueLevels; hl++) {
+			for (int sl = 0; sl < saturationLevels; sl++) {
+				for (int vl = 0; vl < valueLevels; vl++) {
+					int s = saturationSample[sl];
+					int v = valueSample[vl];
+					byte symbol = SYMBOL_ERROR;
+					if (s < Constants_colorOfThree.SATURATION_THRESHOLD && v >= Constants_colorOfThree.WHITE_VALUE_THRESHOLD) {
+						symbol = whiteSymbol;
+					} else if (useBlack && v < Constants_colorOfThree.BLACK_VALUE_THRESHOLD) {
+						symbol = blackSymbol;
+					} else if (s >= Constants_colorOfThree.SATURATION_THRESHOLD && hl > 0 && hl < hueBoundaries.length) {
+						symbol = hueSymbols[hl - 1];
+					}
+					symbolTable[(hl * saturationLevels + sl) * valueLevels + vl] = symbol;
+				}
+			}
+		}
+	}
+
+	/**
+	 * HSV値から記号を求める
+	 *
+	 * @param hue
+	 *            H(色相、0～179)
+	 * @param saturation
+	 *            S(彩度、0～255)
+	 * @param value
+	 *            V(明度、0～255)
+	 * @return 記号(どの色にも当てはまらない場合はSYMBOL_ERROR)
+	 */
+	public byte classify(int hue, int saturation, int value) {
+		return symbolTable[(hueLevel[hue] * saturationLevels + saturationLevel[saturation]) * valueLevels
+				+ valueLevel[value]];
+	}
+
+	/**
+	 * HSV各チャンネルの値から記号を求める(小数は切り捨てる)
+	 *
+	 * @param data
+	 *            HSV各チャンネルの値
+	 * @return 記号(どの色にも当てはまらない場合はSYMBOL_ERROR)
+	 */
+	public byte classify(double[] data) {
+		return classify((int) data[0], (int) data[1], (int) data[2]);
+	}
+}
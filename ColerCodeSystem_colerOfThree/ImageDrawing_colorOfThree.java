@@ -1,5 +1,7 @@
 
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.image.BufferedImage;
 
 import javax.swing.JPanel;
@@ -73,6 +75,26 @@ public class ImageDrawing_colorOfThree extends JPanel {
 		return image2;
 	}
 
+	/**
+	 * 画面の表示形式に合わせたBufferedImageに描き写す<br>
+	 * 何度も表示する画像を一度だけ変換しておくと、描画の度に形式の変換が行われない。
+	 *
+	 * @param source
+	 *            matToBufferedImageで変換した画像
+	 * @return 画面と同じ形式の画像(画面のない環境ではsourceをそのまま返す)
+	 */
+	public static BufferedImage toCompatibleImage(BufferedImage source) {
+		if (source == null || GraphicsEnvironment.isHeadless()) {
+			return source;
+		}
+		BufferedImage compatible = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+				.getDefaultConfiguration().createCompatibleImage(source.getWidth(), source.getHeight());
+		Graphics2D g = compatible.createGraphics();
+		g.drawImage(source, 0, 0, null);
+		g.dispose();
+		return compatible;
+	}
+
 	/**
 	 * paintComponentは画像の描画に利用
 	 */
@@ -0,0 +1,134 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 処理時間(ナノ秒)の度数分布<br>
+ * 2のべき乗ごとの区間をさらにSUB_BUCKETS個に等分して数えるため、記録は配列の加算1回で済み、
+ * パーセンタイルは区間の上端として誤差約6%以内で求まる。<br>
+ * 記録は1つのスレッドから行い、パーセンタイルの参照は別のスレッドから行ってもよい。
+ *
+ * @see ReceiveLatency_colorOfThree
+ * @author Ogi
+ * @version 1.0
+ */
+public class LatencyHistogram_colorOfThree {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;// 2のべき乗の区間1つあたりの分割数
+	private static final int MAGNITUDES = 64 - SUB_BUCKET_BITS;
+
+	private AtomicLongArray counts;
+	private volatile long totalCount;
+	private volatile long totalNanos;
+	private volatile long maxNanos;
+
+	public LatencyHistogram_colorOfThree() {
+		counts = new AtomicLongArray((MAGNITUDES + 1) * SUB_BUCKETS);
+	}
+
+	/**
+	 * 処理時間を1件記録する
+	 *
+	 * @param nanos
+	 *            処理時間(ナノ秒)
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucketIndex(nanos));
+		totalCount++;
+		totalNanos += nanos;
+		if (nanos > maxNanos) {
+			maxNanos = nanos;
+		}
+	}
+
+	/**
+	 * パーセンタイルを求める
+	 *
+	 * @param percentile
+	 *            パーセンタイル(0～100)
+	 * @return 処理時間(ナノ秒、記録がない場合は0)
+	 */
+	public long getPercentile(double percentile) {
+		long count = totalCount;
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(bucketUpperBound(i), maxNanos);
+			}
+		}
+		return maxNanos;
+	}
+
+	public long getCount() {
+		return totalCount;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	/**
+	 * @return 平均の処理時間(ナノ秒、記録がない場合は0)
+	 */
+	public long getMeanNanos() {
+		long count = totalCount;
+		return count == 0 ? 0 : totalNanos / count;
+	}
+
+	/**
+	 * 記録を全て消去する
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		totalCount = 0;
+		totalNanos = 0;
+		maxNanos = 0;
+	}
+
+	/**
+	 * 件数、平均、50/90/99パーセンタイル、最大をマイクロ秒で表示する
+	 */
+	@Override
+	public String toString() {
+		return "件数:" + getCount() + " 平均:" + micros(getMeanNanos()) + " p50:" + micros(getPercentile(50)) + " p90:"
+				+ micros(getPercentile(90)) + " p99:" + micros(getPercentile(99)) + " 最大:" + micros(getMaxNanos());
+	}
+
+	private static String micros(long nanos) {
+		return String.format("%.1fus", nanos / 1000.0);
+	}
+
+	/**
+	 * 処理時間から区間の番号を求める<br>
+	 * SUB_BUCKETS未満はそのままの値、以降は最上位bitの位置ごとに上位SUB_BUCKET_BITS+1bitで区間を決める。
+	 */
+	private static int bucketIndex(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;// 0以上
+		int subBucket = (int) (nanos >>> magnitude) - SUB_BUCKETS;// 0～SUB_BUCKETS-1
+		return (magnitude + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * 区間に含まれる最大の処理時間を求める
+	 */
+	private static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int magnitude = index / SUB_BUCKETS - 1;
+		int subBucket = index % SUB_BUCKETS;
+		return ((long) (subBucket + SUB_BUCKETS + 1) << magnitude) - 1;
+	}
+}
@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 同じパネルを写した連続するフレームの読み取り結果をブロックごとに投票して集計する<br>
+ * パネルはコード情報(№)から求めたパネルの番号で区別する。<br>
+ * 全てのブロックで1位の記号と2位の記号の得票差がvoteMargin以上になった時点でパネルの受信を確定するため、
+ * フレームごとに異なるブロックを読み誤る場合でも、全てのブロックを正しく読めるフレームを待たずに受信できる。<br>
+ * どの色にも当てはまらなかったブロック("error")は投票しない。
+ *
+ * @see VisibleLightReceiver2_colorOfThree
+ * @author Ogi
+ * @version 1.0
+ */
+public class PanelAccumulator_colorOfThree {
+
+	// 投票する記号(赤,緑,青,白,黒)
+	private static final String[] SYMBOL_NAMES = { "1", "2", "3", "4", "space" };
+
+	private int voteMargin;
+	private int[][][] votes;// [パネルの番号][ブロック][記号]ごとの得票数
+	private int[] frameCount;// パネルごとの投票したフレーム数
+
+	/**
+	 * @param panelCount
+	 *            パネルの枚数
+	 * @param voteMargin
+	 *            受信を確定する1位と2位の得票差(1以上)
+	 */
+	public PanelAccumulator_colorOfThree(int panelCount, int voteMargin) {
+		this.voteMargin = voteMargin;
+		votes = new int[panelCount][][];
+		frameCount = new int[panelCount];
+	}
+
+	/**
+	 * 1フレーム分の読み取り結果を投票する<br>
+	 * ブロック数が前回の投票と異なる場合は、そのパネルのこれまでの投票を破棄してから投票する。
+	 *
+	 * @param panel
+	 *            パネルの番号
+	 * @param parts
+	 *            パネルのブロックごとの記号("1"～"4","space","error")
+	 * @return 投票によりパネルの受信が確定した場合はtrue
+	 */
+	public boolean vote(int panel, List<String> parts) {
+		if (votes[panel] == null || votes[panel].length != parts.size()) {
+			votes[panel] = new int[parts.size()][SYMBOL_NAMES.length];
+			frameCount[panel] = 0;
+		}
+		int[][] panelVotes = votes[panel];
+		for (int i = 0; i < panelVotes.length; i++) {
+			int symbol = symbolIndex(parts.get(i));
+			if (symbol >= 0) {
+				panelVotes[i][symbol]++;
+			}
+		}
+		frameCount[panel]++;
+		return isConfident(panel);
+	}
+
+	/**
+	 * 全てのブロックで1位と2位の得票差がvoteMargin以上であるかを判断する
+	 *
+	 * @param panel
+	 *            パネルの番号
+	 * @return 受信が確定している場合はtrue
+	 */
+	public boolean isConfident(int panel) {
+		if (votes[panel] == null) {
+			return false;
+		}
+		for (int[] cellVotes : votes[panel]) {
+			int first = 0;
+			int second = 0;
+			for (int count : cellVotes) {
+				if (count > first) {
+					second = first;
+					first = count;
+				} else if (count > second) {
+					second = count;
+				}
+			}
+			if (first - second < voteMargin) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * ブロックごとに得票数1位の記号を返す
+	 *
+	 * @param panel
+	 *            パネルの番号
+	 * @return ブロックごとの記号(投票がない場合は空のList)
+	 */
+	public List<String> getSymbols(int panel) {
+		List<String> symbols = new ArrayList<String>();
+		if (votes[panel] == null) {
+			return symbols;
+		}
+		for (int[] cellVotes : votes[panel]) {
+			int best = 0;
+			for (int k = 1; k < cellVotes.length; k++) {
+				if (cellVotes[k] > cellVotes[best]) {
+					best = k;
+				}
+			}
+			symbols.add(SYMBOL_NAMES[best]);
+		}
+		return symbols;
+	}
+
+	/**
+	 * @param panel
+	 *            パネルの番号
+	 * @return これまでに投票したフレーム数
+	 */
+	public int getFrameCount(int panel) {
+		return frameCount[panel];
+	}
+
+	/**
+	 * 全てのパネルの投票を破棄する
+	 */
+	public void clear() {
+		for (int i = 0; i < votes.length; i++) {
+			votes[i] = null;
+			frameCount[i] = 0;
+		}
+	}
+
+	/**
+	 * 記号から得票数の配列の位置を求める
+	 *
+	 * @return 配列の位置(投票しない記号の場合は-1)
+	 */
+	private static int symbolIndex(String symbol) {
+		for (int i = 0; i < SYMBOL_NAMES.length; i++) {
+			if (SYMBOL_NAMES[i].equals(symbol)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,167 @@
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 送信画像の切り替え時刻を決める<br>
+ * 切り替え時刻は開始時刻からの周期の整数倍とし、前回の切り替えからの待ち時間とはしないため、描画にかかった時間で周期がずれていかない。
+ * 切り替えが1周期以上遅れた場合は間に合わなかった時刻を飛ばし、遅れた分を取り戻そうと続けて切り替えることはしない。<br>
+ * 切り替え時刻に対して実際に描画し終えた時刻の遅れと、描画の間隔をLatencyHistogram_colorOfThreeに記録する。
+ *
+ * @see CreateTransmisstionImage2_colorOfThree
+ * @see LatencyHistogram_colorOfThree
+ * @author Ogi
+ * @version 1.0
+ */
+public class PanelScheduler_colorOfThree {
+
+	private static final long SPIN_NANOS = 1000000;// 切り替え時刻の直前はスリープせずに待つ時間(スリープの精度が粗いため)
+
+	private long periodNanos;// 切り替えの周期
+	private long startNanos;// 最初の切り替え時刻
+	private long deadlineCount;// 開始から数えた次の切り替えの番号
+	private long skippedCount;// 間に合わずに飛ばした切り替えの数
+	private long lastPaintNanos;// 前回描画し終えた時刻
+	private long[] panelPaintNanos;// パネルごとの最後に描画し終えた時刻
+	private LatencyHistogram_colorOfThree paintDelay;// 切り替え時刻から描画し終えるまでの遅れ
+	private LatencyHistogram_colorOfThree paintInterval;// 描画し終えた時刻の間隔
+
+	/**
+	 * @param panelRate
+	 *            1秒あたりの切り替え回数
+	 * @param panelCount
+	 *            パネルの枚数
+	 */
+	public PanelScheduler_colorOfThree(double panelRate, int panelCount) {
+		panelPaintNanos = new long[panelCount];
+		paintDelay = new LatencyHistogram_colorOfThree();
+		paintInterval = new LatencyHistogram_colorOfThree();
+		setPanelRate(panelRate);
+		start();
+	}
+
+	/**
+	 * 1秒あたりの切り替え回数を設定する。画面のリフレッシュレートを超える場合はリフレッシュレートにする<br>
+	 * 切り替え中に変更した場合は、次の切り替えから新しい周期で数え直す。
+	 *
+	 * @param panelRate
+	 *            1秒あたりの切り替え回数
+	 */
+	public void setPanelRate(double panelRate) {
+		double rate = Math.min(Math.max(panelRate, Double.MIN_NORMAL), getRefreshRate());
+		if (rate != panelRate) {
+			System.out.println("切り替え回数を" + panelRate + "回/秒から" + rate + "回/秒に変更しました");
+		}
+		long nextDeadline = startNanos + deadlineCount * periodNanos;
+		periodNanos = (long) (1e9 / rate);
+		startNanos = nextDeadline;
+		deadlineCount = 0;
+	}
+
+	/**
+	 * 1秒あたりの切り替え回数を返す
+	 *
+	 * @return 1秒あたりの切り替え回数
+	 */
+	public double getPanelRate() {
+		return 1e9 / periodNanos;
+	}
+
+	/**
+	 * 現在時刻を最初の切り替え時刻とし、記録を消去する
+	 */
+	public void start() {
+		startNanos = System.nanoTime();
+		deadlineCount = 0;
+		skippedCount = 0;
+		lastPaintNanos = 0;
+		paintDelay.reset();
+		paintInterval.reset();
+	}
+
+	/**
+	 * 次の切り替え時刻まで待つ<br>
+	 * 既に1周期以上遅れている場合は、間に合わなかった切り替え時刻を飛ばして現在時刻の直後の切り替え時刻まで待つ。
+	 *
+	 * @return 今回の切り替え時刻(System.nanoTime()の値)
+	 */
+	public long awaitNextDeadline() {
+		long now = System.nanoTime();
+		long deadline = startNanos + deadlineCount * periodNanos;
+		if (now - deadline >= periodNanos) {
+			long skipped = (now - deadline) / periodNanos;
+			deadlineCount += skipped;
+			skippedCount += skipped;
+			deadline = startNanos + deadlineCount * periodNanos;
+		}
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			if (remaining > SPIN_NANOS) {
+				LockSupport.parkNanos(remaining - SPIN_NANOS);
+			} else {
+				Thread.yield();
+			}
+		}
+		deadlineCount++;
+		return deadline;
+	}
+
+	/**
+	 * パネルを描画し終えた時刻を記録する
+	 *
+	 * @param panel
+	 *            描画したパネルの番号(codeNo)
+	 * @param deadline
+	 *            awaitNextDeadline()で待った切り替え時刻
+	 * @param paintNanos
+	 *            描画し終えた時刻(System.nanoTime()の値)
+	 */
+	public void recordPaint(int panel, long deadline, long paintNanos) {
+		panelPaintNanos[panel] = paintNanos;
+		paintDelay.record(Math.max(0, paintNanos - deadline));
+		if (lastPaintNanos != 0) {
+			paintInterval.record(paintNanos - lastPaintNanos);
+		}
+		lastPaintNanos = paintNanos;
+	}
+
+	/**
+	 * パネルを最後に描画し終えた時刻を返す
+	 *
+	 * @param panel
+	 *            パネルの番号(codeNo)
+	 * @return 描画し終えた時刻(System.nanoTime()の値、描画していない場合は0)
+	 */
+	public long getPaintNanos(int panel) {
+		return panelPaintNanos[panel];
+	}
+
+	/**
+	 * 間に合わずに飛ばした切り替えの数を返す
+	 *
+	 * @return 飛ばした切り替えの数
+	 */
+	public long getSkippedCount() {
+		return skippedCount;
+	}
+
+	/**
+	 * 画面のリフレッシュレートを返す
+	 *
+	 * @return リフレッシュレート(取得できない場合はDEFAULT_REFRESH_RATE)
+	 */
+	public static int getRefreshRate() {
+		if (GraphicsEnvironment.isHeadless()) {
+			return Constants_colorOfThree.DEFAULT_REFRESH_RATE;
+		}
+		int refreshRate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode()
+				.getRefreshRate();
+		return refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN ? Constants_colorOfThree.DEFAULT_REFRESH_RATE
+				: refreshRate;
+	}
+
+	public String toString() {
+		return "送信画像の切り替え(" + getPanelRate() + "回/秒) 飛ばした回数:" + skippedCount + "\n描画の遅れ " + paintDelay
+				+ "\n描画の間隔 " + paintInterval;
+	}
+}
@@ -0,0 +1,52 @@
+import java.awt.image.BufferedImage;
+
+import org.opencv.core.Mat;
+
+/**
+ * 送受信中の画像の表示先<br>
+ * 送信機、受信機は表示する画像をこのインタフェースに渡すのみで、ウィンドウの生成や描画は実装側が行う。<br>
+ * 表示先を渡さない(null)場合はウィンドウを生成せず、表示用の画像変換も行わないため、
+ * 画面のない環境や処理速度の測定で送受信処理のみを動かすことができる。
+ *
+ * @see SwingPreviewSink_colorOfThree
+ * @author Ogi
+ * @version 1.0
+ */
+public interface PreviewSink_colorOfThree {
+
+	/**
+	 * 表示を開始する
+	 */
+	void open();
+
+	/**
+	 * 画像を表示する
+	 *
+	 * @param image
+	 *            表示する画像(CV_8UC3(BGR)またはCV_8UC1)
+	 */
+	void show(Mat image);
+
+	/**
+	 * 画像を表示する
+	 *
+	 * @param image
+	 *            表示する画像
+	 */
+	void show(BufferedImage image);
+
+	/**
+	 * 画像を表示し、描画し終えるまで待つ<br>
+	 * 送信画像の切り替え時刻に合わせて表示する場合に利用する。
+	 *
+	 * @param image
+	 *            表示する画像
+	 * @return 描画し終えた時刻(System.nanoTime()の値)
+	 */
+	long showAndWait(BufferedImage image);
+
+	/**
+	 * 表示を終了する
+	 */
+	void close();
+}
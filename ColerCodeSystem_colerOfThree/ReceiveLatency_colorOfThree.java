@@ -0,0 +1,127 @@
+/**
+ * 受信ループの処理段階ごとの処理時間を記録する<br>
+ * 1フレームの間にstart()とadd()で段階ごとの処理時間を合計し、endFrame()でフレームごとの合計を
+ * 段階ごとのLatencyHistogram_colorOfThreeに記録する(輪郭ごとに複数回行う段階もフレーム単位で比較できる)。<br>
+ * 記録は受信スレッドから行い、toString()による参照は別のスレッドから行ってもよい。
+ *
+ * @see VisibleLightReceiver2_colorOfThree
+ * @see LatencyHistogram_colorOfThree
+ * @author Ogi
+ * @version 1.0
+ */
+public class ReceiveLatency_colorOfThree {
+
+	// 処理段階
+	public static final int STAGE_CAPTURE = 0;// カメラからの取得
+	public static final int STAGE_COLOR_CONVERSION = 1;// HSV変換(またはV(明度)の算出)
+	public static final int STAGE_THRESHOLD = 2;// 二値化
+	public static final int STAGE_FIND_CONTOURS = 3;// 輪郭検出
+	public static final int STAGE_APPROX_POLY = 4;// 輪郭の直線近似
+	public static final int STAGE_MARKER_CHECKER = 5;// 四隅の色確認(射影変換行列の作成を含む)
+	public static final int STAGE_TRANSFORM_MARKER = 6;// マーカの射影変換
+	public static final int STAGE_COLOR_DECORDE = 7;// カラー・コードの読み取り
+	public static final int STAGE_FRAME = 8;// 1フレーム全体
+	private static final String[] STAGE_NAMES = { "取得", "色変換", "二値化", "輪郭検出", "直線近似", "四隅確認", "射影変換", "色読み取り",
+			"フレーム全体" };
+
+	private LatencyHistogram_colorOfThree[] histograms;
+	private long[] frameNanos;// このフレームの段階ごとの処理時間の合計
+	private boolean[] frameStages;// このフレームで行った段階
+	private long frameStart;
+	private int frameCount;
+	private int reportInterval;// 途中経過を表示する間隔(フレーム数、0:表示しない)
+
+	/**
+	 * @param reportInterval
+	 *            途中経過を表示する間隔(フレーム数、0:表示しない)
+	 */
+	public ReceiveLatency_colorOfThree(int reportInterval) {
+		this.reportInterval = reportInterval;
+		histograms = new LatencyHistogram_colorOfThree[STAGE_NAMES.length];
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram_colorOfThree();
+		}
+		frameNanos = new long[STAGE_NAMES.length];
+		frameStages = new boolean[STAGE_NAMES.length];
+	}
+
+	/**
+	 * フレームの処理開始時に呼び出す
+	 */
+	public void startFrame() {
+		frameStart = System.nanoTime();
+	}
+
+	/**
+	 * 段階の処理開始時刻を返す
+	 *
+	 * @return 現在時刻(ナノ秒)
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * 段階の処理時間をこのフレームの合計に加える
+	 *
+	 * @param stage
+	 *            処理段階(STAGE_～)
+	 * @param startNanos
+	 *            start()で取得した処理開始時刻
+	 */
+	public void add(int stage, long startNanos) {
+		frameNanos[stage] += System.nanoTime() - startNanos;
+		frameStages[stage] = true;
+	}
+
+	/**
+	 * フレームの処理終了時に呼び出し、段階ごとの合計を記録する<br>
+	 * reportIntervalフレームごとに途中経過を表示する。
+	 */
+	public void endFrame() {
+		frameNanos[STAGE_FRAME] = System.nanoTime() - frameStart;
+		frameStages[STAGE_FRAME] = true;
+		for (int i = 0; i < frameNanos.length; i++) {
+			if (frameStages[i]) {
+				histograms[i].record(frameNanos[i]);
+			}
+			frameNanos[i] = 0;
+			frameStages[i] = false;
+		}
+		frameCount++;
+		if (reportInterval > 0 && frameCount % reportInterval == 0) {
+			System.out.println(this);
+		}
+	}
+
+	/**
+	 * @param stage
+	 *            処理段階(STAGE_～)
+	 * @return 処理段階の度数分布
+	 */
+	public LatencyHistogram_colorOfThree getHistogram(int stage) {
+		return histograms[stage];
+	}
+
+	/**
+	 * 記録を全て消去する
+	 */
+	public void reset() {
+		for (LatencyHistogram_colorOfThree histogram : histograms) {
+			histogram.reset();
+		}
+		frameCount = 0;
+	}
+
+	/**
+	 * 段階ごとの処理時間の分布を1行ずつ表示する
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("受信処理時間(1フレームあたり)\n");
+		for (int i = 0; i < histograms.length; i++) {
+			builder.append(STAGE_NAMES[i]).append(" ").append(histograms[i]).append("\n");
+		}
+		return builder.toString();
+	}
+}
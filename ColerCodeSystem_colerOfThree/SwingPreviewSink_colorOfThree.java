@@ -0,0 +1,118 @@
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+import org.opencv.core.Mat;
+
+/**
+ * JFrameとImageDrawing_colorOfThreeパネルによる画像の表示先<br>
+ * 画像を表示するたびにウィンドウサイズを画像の大きさに合わせる。
+ *
+ * @see PreviewSink_colorOfThree
+ * @see ImageDrawing_colorOfThree
+ * @author Ogi
+ * @version 1.0
+ */
+public class SwingPreviewSink_colorOfThree implements PreviewSink_colorOfThree {
+
+	private JFrame imageFrame;
+	private ImageDrawing_colorOfThree imagePanel;
+	private int widthMargin;
+	private int heightMargin;
+
+	/**
+	 * 閉じるボタンでは何もしないウィンドウを生成する
+	 *
+	 * @param title
+	 *            ウィンドウのタイトル
+	 * @param widthMargin
+	 *            画像の幅に対するウィンドウの横の余白
+	 * @param heightMargin
+	 *            画像の高さに対するウィンドウの縦の余白
+	 */
+	public SwingPreviewSink_colorOfThree(String title, int widthMargin, int heightMargin) {
+		this(title, widthMargin, heightMargin, JFrame.DO_NOTHING_ON_CLOSE);
+	}
+
+	/**
+	 * @param title
+	 *            ウィンドウのタイトル
+	 * @param widthMargin
+	 *            画像の幅に対するウィンドウの横の余白
+	 * @param heightMargin
+	 *            画像の高さに対するウィンドウの縦の余白
+	 * @param closeOperation
+	 *            閉じるボタンの動作(JFrame.setDefaultCloseOperationの値)
+	 */
+	public SwingPreviewSink_colorOfThree(String title, int widthMargin, int heightMargin, int closeOperation) {
+		this.widthMargin = widthMargin;
+		this.heightMargin = heightMargin;
+		imageFrame = new JFrame(title);
+		imageFrame.setDefaultCloseOperation(closeOperation);
+		imagePanel = new ImageDrawing_colorOfThree();
+		imageFrame.setContentPane(imagePanel);
+	}
+
+	public void open() {
+		imageFrame.setVisible(true);
+	}
+
+	public void show(Mat image) {
+		show(imagePanel.matToBufferedImage(image));// 描画のためmat型からbufferedImage型に変換
+	}
+
+	public void show(BufferedImage image) {
+		if (image == null) {
+			return;
+		}
+		setImage(image);
+		imageFrame.repaint();// パネルを再描画
+	}
+
+	/**
+	 * repaint()ではEDTが描画する時刻が決まらないため、EDT上でその場で描画し、描画命令を画面に反映させてから戻る
+	 */
+	public long showAndWait(final BufferedImage image) {
+		if (image == null) {
+			return System.nanoTime();
+		}
+		final long[] paintNanos = new long[1];
+		try {
+			SwingUtilities.invokeAndWait(() -> {
+				setImage(image);
+				imagePanel.paintImmediately(0, 0, imagePanel.getWidth(), imagePanel.getHeight());
+				Toolkit.getDefaultToolkit().sync();
+				paintNanos[0] = System.nanoTime();
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			paintNanos[0] = System.nanoTime();
+		} catch (InvocationTargetException e) {
+			e.printStackTrace();
+			paintNanos[0] = System.nanoTime();
+		}
+		return paintNanos[0];
+	}
+
+	/**
+	 * ウィンドウサイズを画像に合わせ、パネルに画像を設定する
+	 *
+	 * @param image
+	 *            表示する画像
+	 */
+	private void setImage(BufferedImage image) {
+		int frameWidth = image.getWidth() + widthMargin;
+		int frameHeight = image.getHeight() + heightMargin;
+		if (imageFrame.getWidth() != frameWidth || imageFrame.getHeight() != frameHeight) {
+			imageFrame.setSize(frameWidth, frameHeight);// ウィンドウサイズを取得画像に合ったサイズに
+		}
+		imagePanel.setimage(image);// 変換した画像をPanelに追加
+	}
+
+	public void close() {
+		imageFrame.setVisible(false);
+	}
+}
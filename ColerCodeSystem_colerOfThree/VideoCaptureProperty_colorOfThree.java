@@ -1,6 +1,138 @@
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.videoio.VideoCapture;
 
+/**
+ * 受信カメラの設定値(露出、ゲイン、明るさ、コントラスト、色の強さ、白バランス)を管理する<br>
+ * 設定値はapply()で一度だけカメラに設定し、以降はCAMERA_CHECK_INTERVALフレームごとに読み出して
+ * ずれていた項目のみ設定し直す(ドライバによってはsetの度にキャプチャが止まるため、毎フレームの設定は行わない)。<br>
+ * 自動露出を有効にすると、マーカの白飛びと暗さを元に露出を1段ずつ調整し、ブロックの色の差が最も出る露出に保つ。
+ *
+ * @see VisibleLightReceiver2_colorOfThree
+ * @author Ogi
+ * @version 1.0
+ */
 public class VideoCaptureProperty_colorOfThree {
-public VideoCaptureProperty_colorOfThree() {
-	// TODO 自動生成されたコンストラクター・スタブ
-}
+
+	// 設定項目ID(露出,ゲイン,明るさ,コントラスト,色の強さ,白バランス)
+	private static final int[] PROPERTY_IDS = { Constants_colorOfThree.ID_EXP, Constants_colorOfThree.ID_GAIN,
+			Constants_colorOfThree.ID_BRIGHT, Constants_colorOfThree.ID_CON, Constants_colorOfThree.ID_SAT,
+			Constants_colorOfThree.ID_WHITE };
+	private static final String[] PROPERTY_NAMES = { "露出", "ゲイン", "明るさ", "コントラスト", "色の強さ", "白バランス" };
+	private static final int EXPOSURE = 0;// PROPERTY_IDSでの露出の位置
+
+	private VideoCapture captureCamera;
+	private double[] targetValues;// カメラに設定する値
+	private int frameCount;
+	private boolean autoExposure;// マーカの明るさから露出を調整するか
+	private Mat markerValueImage;// マーカのV(明度)チャンネル(自動露出用)
+	private Mat clippedImage;// 白飛びした画素(自動露出用)
+
+	/**
+	 * @param captureCamera
+	 *            設定を行うカメラ
+	 */
+	public VideoCaptureProperty_colorOfThree(VideoCapture captureCamera) {
+		this.captureCamera = captureCamera;
+		targetValues = new double[] { Constants_colorOfThree.EXP, Constants_colorOfThree.GAIN,
+				Constants_colorOfThree.BRIGHT, Constants_colorOfThree.CON, Constants_colorOfThree.SAT,
+				Constants_colorOfThree.WHITE };
+		markerValueImage = new Mat();
+		clippedImage = new Mat();
+	}
+
+	/**
+	 * 全ての設定値をカメラに設定する
+	 */
+	public void apply() {
+		for (int i = 0; i < PROPERTY_IDS.length; i++) {
+			captureCamera.set(PROPERTY_IDS[i], targetValues[i]);
+		}
+		frameCount = 0;
+	}
+
+	/**
+	 * 1フレームごとに呼び出し、設定値のずれの確認と自動露出を行う
+	 *
+	 * @param markerImage
+	 *            このフレームで検出したマーカ(HSV)。検出できなかった場合はnull
+	 */
+	public void update(Mat markerImage) {
+		frameCount++;
+		if (frameCount % Constants_colorOfThree.CAMERA_CHECK_INTERVAL == 0) {
+			reapplyDrifted();
+		}
+		if (autoExposure && markerImage != null && frameCount % Constants_colorOfThree.AUTO_EXPOSURE_INTERVAL == 0) {
+			adjustExposure(markerImage);
+		}
+	}
+
+	/**
+	 * 自動露出を設定する
+	 *
+	 * @param autoExposure
+	 *            マーカの明るさから露出を調整する場合はtrue
+	 */
+	public void setAutoExposure(boolean autoExposure) {
+		this.autoExposure = autoExposure;
+	}
+
+	/**
+	 * 現在の露出の設定値を返す(自動露出で調整した値を含む)
+	 *
+	 * @return 露出の設定値
+	 */
+	public double getExposure() {
+		return targetValues[EXPOSURE];
+	}
+
+	/**
+	 * 保持しているMatを解放する
+	 */
+	public void release() {
+		markerValueImage.release();
+		clippedImage.release();
+	}
+
+	/**
+	 * カメラの設定値を読み出し、設定値からずれていた項目のみ設定し直す
+	 */
+	private void reapplyDrifted() {
+		for (int i = 0; i < PROPERTY_IDS.length; i++) {
+			double value = captureCamera.get(PROPERTY_IDS[i]);
+			if (Math.abs(value - targetValues[i]) > Constants_colorOfThree.CAMERA_SETTING_TOLERANCE) {
+				System.out.println(PROPERTY_NAMES[i] + "：" + value + "を" + targetValues[i] + "に設定し直します");
+				captureCamera.set(PROPERTY_IDS[i], targetValues[i]);
+			}
+		}
+	}
+
+	/**
+	 * マーカのV(明度)から露出を1段調整する<br>
+	 * 白飛びした画素が多い場合は白と色のブロックの区別がつかなくなるため露出を下げ、
+	 * 白飛びがなく全体が暗い場合は色のブロックと黒の区別がつかなくなるため露出を上げる。
+	 *
+	 * @param markerImage
+	 *            射影変換後のマーカ(HSV)
+	 */
+	private void adjustExposure(Mat markerImage) {
+		Core.extractChannel(markerImage, markerValueImage, 2);
+		Imgproc.threshold(markerValueImage, clippedImage, Constants_colorOfThree.AUTO_EXPOSURE_CLIP_VALUE - 1, 255,
+				Imgproc.THRESH_BINARY);
+		double clippedRatio = Core.countNonZero(clippedImage) / (double) markerValueImage.total();
+		double meanValue = Core.mean(markerValueImage).val[0];
+		double exposure = targetValues[EXPOSURE];
+		if (clippedRatio > Constants_colorOfThree.AUTO_EXPOSURE_CLIP_RATIO) {
+			exposure = Math.max(exposure - 1, Constants_colorOfThree.AUTO_EXPOSURE_MIN);
+		} else if (meanValue < Constants_colorOfThree.AUTO_EXPOSURE_TARGET_VALUE) {
+			exposure = Math.min(exposure + 1, Constants_colorOfThree.AUTO_EXPOSURE_MAX);
+		}
+		if (exposure != targetValues[EXPOSURE]) {
+			System.out.println("露出を" + targetValues[EXPOSURE] + "から" + exposure + "に変更します(白飛び:"
+					+ clippedRatio + " 平均明度:" + meanValue + ")");
+			targetValues[EXPOSURE] = exposure;
+			captureCamera.set(Constants_colorOfThree.ID_EXP, exposure);
+		}
+	}
 }
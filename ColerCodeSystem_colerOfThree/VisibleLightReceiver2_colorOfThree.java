@@ -30,29 +30,28 @@ import org.opencv.videoio.VideoCapture;
  * <br>
  * マーカver1とは互換性を持たない。<br>
  * フィールド変数であるdivisionの値をVisibleLightReceiver2のdivisionと揃えること。<br>
+ * 1フレームに写った全てのマーカをデコードするため、送信側で複数のパネルを並べて表示した場合も受信できる。<br>
+ * 各パネルは連続するフレームの読み取り結果をPanelAccumulator_colorOfThreeで投票し、得票差が十分になった時点で受信する。<br>
  * *****************************************************************************
  *
  * @see CreateTransmisstionImage_colorOfThree
  * @see CreateTransmisstionImage2_colorOfThree
  * @see VisibleLightReceiver_colorOfThree
+ * @see PanelAccumulator_colorOfThree
  * @author Ogi
  * @version 1.0
  */
 public class VisibleLightReceiver2_colorOfThree extends Thread {
 	private VideoCapture captureCamera;
-	private JFrame processedImageFrame;
-	private JFrame hsvImageFrame;
-	private JFrame decordeImgFrame;
+	private VideoCaptureProperty_colorOfThree cameraProperty;// 受信カメラの設定値の管理
+	private PreviewSink_colorOfThree processedImageSink;// 加工画像の表示先(nullの場合は表示しない)
+	private PreviewSink_colorOfThree markerImageSink;// マーカのH(色相)画像の表示先(nullの場合は表示しない)
+	private PreviewSink_colorOfThree decordeImgSink;// 受信した画像の表示先(nullの場合は表示しない)
 
-	private ImageDrawing_colorOfThree imageDrawing_colorOfThree;
-	private ImageDrawing_colorOfThree processedImagePanel;
-	private ImageDrawing_colorOfThree hsvImagePanel;
-	private ImageDrawing_colorOfThree decordeImgPanel;
 
 	private int division;
 	private int TransformKey;
 	private byte loopCountKeep;
-	private int cameraCount;
 
 	double[][] parts_Of_Data;
 	String[][] receiveList_Panel;
@@ -74,12 +73,48 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 	private List<Byte> inImgBytes;// 取得メディアバイナリデータ
 	private HashMap<String, Integer> colorPatternMap_V;
 
+	private byte[] markerPixels;// マーカ画像の画素値(デコード時に一括で読み出す)
+	private HsvSymbolTable_colorOfThree dataSymbolTable;// データブロックの色判断用参照テーブル
+	private HsvSymbolTable_colorOfThree codeNoSymbolTable;// コード情報(№)の色判断用参照テーブル(黒の判断なし)
 	private CreateTransmisstionImage2_colorOfThree createTransmisstionImage2_colorOfThree;
+	private float[] markerOutLinePoint;// 検出したマーカの輪郭の四隅
+	private Mat srcPointMat;// 射影変換の変換元座標(輪郭ごとに作らず使い回す)
+	private Mat dstPointMat;// 射影変換の変換後座標(輪郭ごとに作らず使い回す)
+	private Mat cornerColorImage;// マーカ四隅のブロックの画素(輪郭ごとに作らず使い回す)
+	private boolean fullFrameHsv;// 画像全体をHSV変換するか(falseの場合は切り出したマーカのみ変換)
+	private PyramidMarkerDetector_colorOfThree pyramidDetector;// 縮小画像でのマーカ候補検出(利用しない場合はnull)
+	private PanelAccumulator_colorOfThree panelAccumulator;// 複数フレームの投票によるパネルの受信(利用しない場合はnull)
+	private ReceiveLatency_colorOfThree latency;// 処理段階ごとの処理時間
 
 	public VisibleLightReceiver2_colorOfThree(
 			CreateTransmisstionImage2_colorOfThree createTransmisstionImage2_colorOfThree) {
+		this(createTransmisstionImage2_colorOfThree, new SwingPreviewSink_colorOfThree("processedImage", 40, 60),
+				new SwingPreviewSink_colorOfThree("hsvImageFrame", 35, 55),
+				new SwingPreviewSink_colorOfThree("byte配列からのimg変換", 40, 60, JFrame.EXIT_ON_CLOSE));
+	}
+
+	/**
+	 * 画像の表示先を指定する場合に利用する<br>
+	 * 表示先にnullを渡すとウィンドウを生成せず、表示用の画像変換や描画も行わない。
+	 *
+	 * @param createTransmisstionImage2_colorOfThree
+	 *            送信側(送信リストとの照合に利用)
+	 * @param processedImageSink
+	 *            加工画像の表示先(表示しない場合はnull)
+	 * @param markerImageSink
+	 *            マーカのH(色相)画像の表示先(表示しない場合はnull)
+	 * @param decordeImgSink
+	 *            受信した画像の表示先(表示しない場合はnull)
+	 */
+	public VisibleLightReceiver2_colorOfThree(
+			CreateTransmisstionImage2_colorOfThree createTransmisstionImage2_colorOfThree,
+			PreviewSink_colorOfThree processedImageSink, PreviewSink_colorOfThree markerImageSink,
+			PreviewSink_colorOfThree decordeImgSink) {
 		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);// Opencvの利用のため
 		this.createTransmisstionImage2_colorOfThree = createTransmisstionImage2_colorOfThree;
+		this.processedImageSink = processedImageSink;
+		this.markerImageSink = markerImageSink;
+		this.decordeImgSink = decordeImgSink;
 		codeReceiverSystemPresetting();
 		flagCheckSet();
 		Pattern(colorPatternMap_V);
@@ -90,21 +125,8 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 	 */
 	private void codeReceiverSystemPresetting() {
 		captureCamera = new VideoCapture(0);// 使用webカメラの宣言
-		processedImageFrame = new JFrame("processedImage");
-		processedImageFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
-		decordeImgFrame = new JFrame("byte配列からのimg変換");
-		decordeImgFrame.setSize(500, 500);
-		decordeImgFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		processedImagePanel = new ImageDrawing_colorOfThree();
-		decordeImgPanel = new ImageDrawing_colorOfThree();
-		processedImageFrame.setContentPane(processedImagePanel);
-		decordeImgFrame.setContentPane(decordeImgPanel);
-		// HSV画像用ウィンドウフレーム
-		hsvImageFrame = new JFrame("hsvImageFrame");
-		hsvImageFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
-		hsvImagePanel = new ImageDrawing_colorOfThree();
-		hsvImageFrame.setContentPane(hsvImagePanel);
-		imageDrawing_colorOfThree = new ImageDrawing_colorOfThree();
+		cameraProperty = new VideoCaptureProperty_colorOfThree(captureCamera);
+		cameraProperty.apply();// 設定は一度だけ行い、以降はずれた項目のみ設定し直す
 		// 最終的なデコード受信結果(それぞれのパネルデータ)
 		receiveList_Panel = new String[Constants_colorOfThree.CODE_NUMBER][Constants_colorOfThree.NUMBER＿OF_PANELDATA];
 		receiveList_Parts = new ArrayList<String>();
@@ -114,8 +136,19 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 		// ブロックでのカラーパターンマップを記憶
 		colorPatternMap_V = new HashMap<String, Integer>();
 		codeCheck = new boolean[Constants_colorOfThree.CODE_NUMBER];
+		srcPointMat = new Mat(Constants_colorOfThree.SIDE_OF_THE_RECTANGLE, 2, CvType.CV_32F);
+		dstPointMat = new Mat(Constants_colorOfThree.SIDE_OF_THE_RECTANGLE, 2, CvType.CV_32F);
+		cornerColorImage = new Mat(Constants_colorOfThree.MARKER_BLOCK, 1, CvType.CV_8UC3);
 		//今回はコード枚数5枚,1枚の情報量が定まっているため可変長ではなく固定としてデータ配列を定めている。
 		parts_Of_Data = new double[Constants_colorOfThree.CODE_NUMBER][Constants_colorOfThree.NUMBER＿OF_PARTS_OF_DATA];
+		setPyramidLevel(Constants_colorOfThree.PYRAMID_LEVEL);
+		setPanelVoteMargin(Constants_colorOfThree.PANEL_VOTE_MARGIN);
+		latency = new ReceiveLatency_colorOfThree(Constants_colorOfThree.LATENCY_REPORT_INTERVAL);
+		dataSymbolTable = new HsvSymbolTable_colorOfThree(Constants_colorOfThree.COLOR_HUE_BOUNDARIES,
+				Constants_colorOfThree.COLOR_HUE_SYMBOLS, Constants_colorOfThree.COLOR_SYMBOL_WHITE,
+				Constants_colorOfThree.COLORENCODE_SPACE);
+		codeNoSymbolTable = new HsvSymbolTable_colorOfThree(Constants_colorOfThree.COLOR_HUE_BOUNDARIES,
+				Constants_colorOfThree.COLOR_HUE_SYMBOLS, Constants_colorOfThree.COLOR_SYMBOL_WHITE);
 	}
 
 	/**
@@ -126,7 +159,6 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 	 */
 	public void run() {
 		while (runningKey) {
-			//System.out.println(cameraCount);
 			receiverLoop();
 		}
 	}
@@ -138,10 +170,15 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 	 * @see VisibleLightReceiver2_colorOfThree#stopRunning()
 	 */
 	public void startRunning() {
-		processedImageFrame.setVisible(true);
-		hsvImageFrame.setVisible(true);
+		if (processedImageSink != null) {
+			processedImageSink.open();
+		}
+		if (markerImageSink != null) {
+			markerImageSink.open();
+		}
 		setRunningKey(true);
 		clearReceiveImgList();
+		latency.reset();
 		new Thread(this).start();
 	}
 
@@ -152,10 +189,17 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 	 * @see VisibleLightReceiver2_colorOfThree#startRunning()
 	 */
 	public void stopRunning() {
-		processedImageFrame.setVisible(false);
-		hsvImageFrame.setVisible(false);
-		decordeImgFrame.setVisible(false);
+		if (processedImageSink != null) {
+			processedImageSink.close();
+		}
+		if (markerImageSink != null) {
+			markerImageSink.close();
+		}
+		if (decordeImgSink != null) {
+			decordeImgSink.close();
+		}
 		setRunningKey(false);
+		System.out.println(latency);
 	}
 
 	/**
@@ -167,6 +211,15 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 		return receiveList_Panel;
 	}
 
+	/**
+	 * 処理段階ごとの処理時間を返す(受信中も参照できる)
+	 *
+	 * @return 処理段階ごとの処理時間
+	 */
+	public ReceiveLatency_colorOfThree getLatency() {
+		return latency;
+	}
+
 	/**
 	 * 受信リスト,メディアバイナリデータをクリア
 	 */
@@ -178,6 +231,9 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 		receiveList_Parts.clear();
 		receiveList.clear();
 		inImgBytes.clear();
+		if (panelAccumulator != null) {
+			panelAccumulator.clear();
+		}
 	}
 
 	/**
@@ -187,6 +243,56 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 		this.division = division;
 	}
 
+	/**
+	 * 画像全体をHSV変換するかを設定する<br>
+	 * falseの場合、二値化に使うV(明度)はBGRの最大値から求め、HSV変換は射影変換後のマーカ画像のみに行う。
+	 *
+	 * @param fullFrameHsv
+	 *            画像全体をHSV変換する場合はtrue
+	 */
+	public void setFullFrameHsv(boolean fullFrameHsv) {
+		this.fullFrameHsv = fullFrameHsv;
+	}
+
+	/**
+	 * 縮小画像でのマーカ検出を設定する<br>
+	 * 縮小画像で四角形の候補を探し、候補の周辺のみ元の解像度で四隅を求める。受信中は変更しないこと。
+	 *
+	 * @param pyramidLevel
+	 *            縮小回数(0:利用しない 1:1/2 2:1/4)
+	 */
+	public void setPyramidLevel(int pyramidLevel) {
+		if (pyramidDetector != null) {
+			pyramidDetector.release();
+		}
+		pyramidDetector = pyramidLevel > 0 ? new PyramidMarkerDetector_colorOfThree(pyramidLevel) : null;
+	}
+
+	/**
+	 * 複数フレームの投票によるパネルの受信を設定する<br>
+	 * 同じパネルを写したフレームの読み取り結果をブロックごとに投票し、全てのブロックの得票差がvoteMargin以上になった時点で受信を確定する。
+	 * 0の場合は従来通り、どの色にも当てはまらないブロックがない最初のフレームで受信を確定する。受信中は変更しないこと。
+	 *
+	 * @param voteMargin
+	 *            受信を確定する1位と2位の得票差(0:投票を行わない)
+	 */
+	public void setPanelVoteMargin(int voteMargin) {
+		panelAccumulator = voteMargin > 0
+				? new PanelAccumulator_colorOfThree(Constants_colorOfThree.CODE_NUMBER, voteMargin) : null;
+	}
+
+	/**
+	 * 自動露出を設定する<br>
+	 * trueの場合、検出したマーカの白飛びと明るさから受信カメラの露出を調整する。
+	 *
+	 * @param autoExposure
+	 *            マーカの明るさから露出を調整する場合はtrue
+	 * @see VideoCaptureProperty_colorOfThree
+	 */
+	public void setAutoExposure(boolean autoExposure) {
+		cameraProperty.setAutoExposure(autoExposure);
+	}
+
 	/**
 	 * 受信ループの制御値セット
 	 */
@@ -281,9 +387,10 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 	public void getImageFromBytes(byte[] bytes) throws IOException {
 		ByteArrayInputStream baos = new ByteArrayInputStream(bytes);
 		BufferedImage img = ImageIO.read(baos);
-		decordeImgFrame.setVisible(true);
-		decordeImgPanel.setimage(img);
-		decordeImgFrame.repaint();
+		if (decordeImgSink != null) {
+			decordeImgSink.open();
+			decordeImgSink.show(img);
+		}
 	}
 
 	/**
@@ -320,14 +427,15 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 
 	/**
 	 * 画像と輪郭を判断し、画像の傾きを分類したキーをフィールド変数TransformKeyに与える。<br>
-	 * 画像の歪みを修正後、輪郭の各辺を水平、垂直に修正し出力する。
+	 * マーカ画像は作成せず、四隅のブロックの中心を変換行列の逆変換で入力画像上の座標に戻して色を確認する。<br>
+	 * 輪郭の四隅はフィールド変数markerOutLinePointに残し、transformMarkerで利用する。
 	 *
 	 * @param detectionContour
 	 *            入力画像内のマーカを示す輪郭
 	 * @param srcImage
-	 *            入力画像
+	 *            入力画像(画像全体をHSV変換しない場合はBGR)
 	 * @param datImage
-	 *            出力画像
+	 *            出力画像(大きさのみ利用)
 	 * @param areaThreshold
 	 *            輪郭大きさのしきい値
 	 * @param division
@@ -342,28 +450,25 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 		 * ４色確認 射影変換 変換元座標設定////////////////////////////////////////////////////////////////////////////
 		 */
 		float srcPoint[] = new float[8];
-		Mat srcPointMat = new Mat(4, 2, CvType.CV_32F);
 		for (int i = 0; i < Constants_colorOfThree.MARKER_BLOCK; i++) {
 			srcPoint[i * 2] = (float) detectionContour.get(i, 0)[0];
 			srcPoint[i * 2 + 1] = (float) detectionContour.get(i, 0)[1];
 		}
 		srcPointMat.put(0, 0, srcPoint);
 		// 変換後座標設定//////////////////////////////////////////////////////////////////////////////////////////////
-		Mat dstPointMat = new Mat(4, 2, CvType.CV_32F);
 		float[] dstPoint;
 		dstPoint = new float[] { datImage.cols(), datImage.rows(), datImage.cols(), 0, 0, 0, 0, datImage.rows() };
 		dstPointMat.put(0, 0, dstPoint);
-		// 変換行列作成////////////////////////////////////////////////////////////////////////////////////////////////
-		Mat r_mat = Imgproc.getPerspectiveTransform(srcPointMat, dstPointMat);
-		// 図形変換処理////////////////////////////////////////////////////////////////////////////////////////////////
-		Mat dstMat = new Mat(datImage.rows(), datImage.cols(), datImage.type());
-		Mat cuttingImage = new Mat(dstMat, new Rect(0, 0, datImage.cols(), datImage.rows()));
-		Imgproc.warpPerspective(srcImage, dstMat, r_mat, dstMat.size(), Imgproc.INTER_LINEAR);
-		cuttingImage.copyTo(datImage);
-		//４色+コード№確認Collar//////////////////////////////////////////////////////////////////////////////////////
+		// マーカ画像上の座標から入力画像上の座標への変換行列作成///////////////////////////////////////////////////////
+		Mat inverseMat = Imgproc.getPerspectiveTransform(dstPointMat, srcPointMat);
+		double[] h = new double[9];
+		inverseMat.get(0, 0, h);
+		inverseMat.release();
+		markerOutLinePoint = srcPoint;// transformMarkerで利用する
+		//４色確認Collar(マーカ画像は作成せず四隅のブロックの中心のみ入力画像から取得)//////////////////////////////////////
 		char[] collarCheckbox = new char[Constants_colorOfThree.MARKER_BLOCK];
 		int boxCount = 0, x = 0, y = 0;
-		double[] data = new double[Constants_colorOfThree.HSV_CH];// HSV各チャンネル格納用
+		byte[] data = new byte[Constants_colorOfThree.HSV_CH];// HSV各チャンネル格納用(四隅のみのため一括読み出しは行わない)
 		double oneThirdWidth = (datImage.rows()) / (double) division;
 		double oneThirdHeight = (datImage.cols()) / (double) division;
 		codeNoKeep = ' ';
@@ -373,20 +478,33 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 				if (i == 0 && j == 0 || i == 0 && j == division - 1 || i == division - 1 && j == 0 || i == division - 1 && j == division - 1) {
 					x = (int) ((j * oneThirdWidth + (j + 1) * oneThirdWidth) / 2);
 					y = (int) ((i * oneThirdHeight + (i + 1) * oneThirdHeight) / 2);
-					data = cuttingImage.get(y, x);// HSV各チャンネルを格納(y,x)なので注意(cuttingImage)
-					if (data[0] * 2 <= 45 || data[0] * 2 >= 330) {// H（色相）を元に色を判断
-						collarCheckbox[boxCount++] = 'A';
-					} else if (data[0] * 2 > 45 && data[0] * 2 <= 135) {
-						collarCheckbox[boxCount++] = 'B';
-					} else if (data[0] * 2 > 135 && data[0] * 2 <= 225) {
-						collarCheckbox[boxCount++] = 'C';
-					} else {
-						collarCheckbox[boxCount++] = 'D';
-					}
-					Imgproc.circle(cuttingImage, new Point(x, y), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化
+					// 入力画像上の座標に戻す
+					double w = h[6] * x + h[7] * y + h[8];
+					int srcX = (int) Math.round((h[0] * x + h[1] * y + h[2]) / w);
+					int srcY = (int) Math.round((h[3] * x + h[4] * y + h[5]) / w);
+					srcX = Math.min(Math.max(srcX, 0), srcImage.cols() - 1);
+					srcY = Math.min(Math.max(srcY, 0), srcImage.rows() - 1);
+					srcImage.get(srcY, srcX, data);// 各チャンネルを格納(y,x)なので注意
+					cornerColorImage.put(boxCount++, 0, data);
 				}
 			}
 		}
+		if (!fullFrameHsv) {
+			Imgproc.cvtColor(cornerColorImage, cornerColorImage, Imgproc.COLOR_BGR2HSV);// 四隅の4画素のみHSV変換
+		}
+		for (boxCount = 0; boxCount < collarCheckbox.length; boxCount++) {
+			cornerColorImage.get(boxCount, 0, data);
+			int hue = (data[0] & 0xff) * 2;
+			if (hue <= 45 || hue >= 330) {// H（色相）を元に色を判断
+				collarCheckbox[boxCount] = 'A';
+			} else if (hue > 45 && hue <= 135) {
+				collarCheckbox[boxCount] = 'B';
+			} else if (hue > 135 && hue <= 225) {
+				collarCheckbox[boxCount] = 'C';
+			} else {
+				collarCheckbox[boxCount] = 'D';
+			}
+		}
 		String sumWord = new String(collarCheckbox);
 
 		switch (sumWord) {
@@ -406,46 +524,43 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 			return false;
 		}
 		//		System.out.println(sumWord);
-		cuttingImage.copyTo(datImage);
 		return true;
 	}
 
 	/**
-	 * 画像の傾きを分類したキーを元に射影変換を行い傾きを修正する 変換後の画像を出力サイズにカットし出力。
+	 * 画像の傾きを分類したキーを元に射影変換を行い、歪みと傾きを1回の変換でまとめて修正する。<br>
+	 * markerCheckerで記憶した輪郭の四隅を、傾きに合わせて並べ替えた出力画像の四隅に対応させる。
 	 *
 	 * @param srcImage
-	 *            入力イメージ
+	 *            入力画像(画像全体をHSV変換しない場合はBGR)
 	 * @param datImage
-	 *            出力先イメージ
+	 *            出力画像(HSV)
 	 * @param TransformKey
 	 *            変換キー
 	 */
 	private void transformMarker(Mat srcImage, Mat datImage, int TransformKey) {
-		// 変換元座標設定
-		float srcPoint[] = { 0, 0, srcImage.cols(), 0, srcImage.cols(), srcImage.rows(), 0, srcImage.rows() };
-		Mat srcPointMat = new Mat(4, 2, CvType.CV_32F);
-		srcPointMat.put(0, 0, srcPoint);
+		// 変換元座標はmarkerCheckerで記憶した輪郭の四隅
+		srcPointMat.put(0, 0, markerOutLinePoint);
 		// 変換後座標設定
-		Mat dstPointMat = new Mat(4, 2, CvType.CV_32F);
 		float[] dstPoint;
 		switch (TransformKey) {
 		case 1:// 基準マーカ（マーカの角）はmarkerOutLinePoint[0]である
-			dstPoint = new float[] { 0, 0, srcImage.cols(), 0, srcImage.cols(), srcImage.rows(), 0, srcImage.rows() };
+			dstPoint = new float[] { datImage.cols(), datImage.rows(), datImage.cols(), 0, 0, 0, 0, datImage.rows() };
 			dstPointMat.put(0, 0, dstPoint);
 			// System.out.println("通過1");
 			break;
 		case 2:// markerOutLinePoint[1]が左上になるように変換
-			dstPoint = new float[] { 0, srcImage.rows(), 0, 0, srcImage.cols(), 0, srcImage.cols(), srcImage.rows() };
+			dstPoint = new float[] { datImage.cols(), 0, 0, 0, 0, datImage.rows(), datImage.cols(), datImage.rows() };
 			dstPointMat.put(0, 0, dstPoint);
 			// System.out.println("通過2");
 			break;
 		case 3:// markerOutLinePoint[2]が左上になるように変換
-			dstPoint = new float[] { srcImage.cols(), srcImage.rows(), 0, srcImage.rows(), 0, 0, srcImage.cols(), 0 };
+			dstPoint = new float[] { 0, 0, 0, datImage.rows(), datImage.cols(), datImage.rows(), datImage.cols(), 0 };
 			dstPointMat.put(0, 0, dstPoint);
 			// System.out.println("通過3");
 			break;
 		case 4:// markerOutLinePoint[3]が左上になるように変換
-			dstPoint = new float[] { srcImage.cols(), 0, srcImage.cols(), srcImage.rows(), 0, srcImage.rows(), 0, 0 };
+			dstPoint = new float[] { 0, datImage.rows(), datImage.cols(), datImage.rows(), datImage.cols(), 0, 0, 0 };
 			dstPointMat.put(0, 0, dstPoint);
 			// System.out.println("通過4");
 			break;
@@ -456,18 +571,19 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 
 		// 変換行列作成
 		Mat r_mat = Imgproc.getPerspectiveTransform(srcPointMat, dstPointMat);
-		// 図形変換処理
-		Mat dstMat = new Mat(datImage.rows(), datImage.cols(), datImage.type());
-		Imgproc.warpPerspective(srcImage, dstMat, r_mat, dstMat.size(), Imgproc.INTER_LINEAR);
-		Mat cuttingImage = new Mat(dstMat, new Rect(0, 0, datImage.cols(), datImage.rows()));
-		cuttingImage.copyTo(datImage);
+		// 図形変換処理(出力サイズで変換するため切り出しは不要)
+		Imgproc.warpPerspective(srcImage, datImage, r_mat, datImage.size(), Imgproc.INTER_LINEAR);
+		r_mat.release();
+		if (!fullFrameHsv) {
+			Imgproc.cvtColor(datImage, datImage, Imgproc.COLOR_BGR2HSV);// 切り出したマーカのみHSV変換
+		}
 	}
 
 	/**
 	 * 入力された画像内のカラー・コードを取得しListに保存する。
 	 *
 	 * @param srcImage
-	 *            入力画像
+	 *            入力画像(画素値はMat.getを1点ずつ呼ばず一括で読み出して利用する)
 	 * @param startX
 	 *            処理範囲の左上ｘ座標
 	 * @param startY
@@ -483,6 +599,11 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 		double[] data = new double[Constants_colorOfThree.HSV_CH];// HSV各チャンネル格納用
 		double[] pointData = new double[Constants_colorOfThree.HSV_CH];// HSV各チャンネル格納用(取得)
 		double[] averageData = new double[Constants_colorOfThree.HSV_CH];// HSV各チャンネル格納用(平均算出)
+		if (markerPixels == null || markerPixels.length != srcImage.total() * srcImage.channels()) {
+			markerPixels = new byte[(int) srcImage.total() * srcImage.channels()];
+		}
+		srcImage.get(0, 0, markerPixels);// 画素値を一括で読み出す(Mat.getを1点ずつ呼ばない)
+		int cols = srcImage.cols();
 		String[] colorPattern = new String[Constants_colorOfThree.BLOCK_OF_BYTE];// カラーパターン格納(取得)
 		int indexCounter = 0, missCount = 0, inImgBytesIndex = 0, x = 0, y = 0;
 		byte loopCount = 0;
@@ -497,125 +618,67 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 			keepCheck = false;
 		}
 		for (int i = 0; i < division; i++) {
-			if (missCount > 0) {
+			if (missCount > 0 && panelAccumulator == null) {// 投票する場合は読み誤ったフレームでも残りのブロックを読み取る
 				missCount = 0;
 				receiveList_Parts.clear();
 				break;
 			}
 			for (int j = 0; j < division; j++) {
-				System.out.println(codeNo);
 				if (i == 0 && j == 0 || i == 0 && j == division - 1 || i == division - 1 && j == 0) {
 				} else if (i == 0 && j == 1) {
 					x = (int) ((j * oneThirdWidth + (j + 1) * oneThirdWidth) / 2);
 					y = (int) ((i * oneThirdHeight + (i + 1) * oneThirdHeight) / 2);
-					data = srcImage.get(y, x);// HSV各チャンネルを格納(y,x)なので注意
+					readPixel(markerPixels, cols, y, x, data);// HSV各チャンネルを格納(y,x)なので注意
 					Imgproc.circle(srcImage, new Point(x, y), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化
-					if (data[1] < 100 && data[2] >= 150) {// H（色相）S(彩度) V(明度)を元に色を判断;
-						codeNoKeep = '白';
-						continue;
-					} else if (data[1] >= 100 && data[0] * 2 >= 0 && data[0] * 2 < 80) {
-						codeNoKeep = '赤';
-						continue;
-					} else if (data[1] >= 100 && data[0] * 2 >= 80 && data[0] * 2 < 148) {
-						codeNoKeep = '緑';
-						continue;
-					} else if (data[1] >= 100 && data[0] * 2 >= 148 && data[0] * 2 < 258) {
-						codeNoKeep = '青';
-						continue;
-					} else {
-						codeNoKeep = ' ';
-						//System.out.println("errorの数値\n" + data[0] * 2 + " " + data[1] + " " + data[2]);
-						continue;
-					}
+					codeNoKeep = symbolToCodeNo(codeNoSymbolTable.classify(data));// H（色相）S(彩度) V(明度)を元に色を判断;
+					//System.out.println("errorの数値\n" + data[0] * 2 + " " + data[1] + " " + data[2]);
+					continue;
 				} else if (i == 0 && j == 2) {
 					x = (int) ((j * oneThirdWidth + (j + 1) * oneThirdWidth) / 2);
 					y = (int) ((i * oneThirdHeight + (i + 1) * oneThirdHeight) / 2);
-					data = srcImage.get(y, x);// HSV各チャンネルを格納(y,x)なので注意
+					readPixel(markerPixels, cols, y, x, data);// HSV各チャンネルを格納(y,x)なので注意
 					Imgproc.circle(srcImage, new Point(x, y), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化
-					if (data[1] < 100 && data[2] >= 150) {// H（色相）S(彩度) V(明度)を元に色を判断;
-						codeNo = codeNoKeep + "白";
-						receiveList_Parts.clear();
-						continue;
-					} else if (data[1] >= 100 && data[0] * 2 >= 0 && data[0] * 2 < 80) {
-						codeNo = codeNoKeep + "赤";
-						receiveList_Parts.clear();
-						continue;
-					} else if (data[1] >= 100 && data[0] * 2 >= 80 && data[0] * 2 < 148) {
-						codeNo = codeNoKeep + "緑";
-						receiveList_Parts.clear();
-						continue;
-					} else if (data[1] >= 100 && data[0] * 2 >= 148 && data[0] * 2 < 258) {
-						codeNo = codeNoKeep + "青";
-						receiveList_Parts.clear();
-						continue;
+					char codeNoColor = symbolToCodeNo(codeNoSymbolTable.classify(data));// H（色相）S(彩度) V(明度)を元に色を判断;
+					if (codeNoColor != ' ') {
+						codeNo = codeNoKeep + String.valueOf(codeNoColor);
 					} else {
 						codeNoKeep = ' ';
 						codeNo = "";
-						receiveList_Parts.clear();
 						//						System.out.println("errorの数値\n" + data[0] * 2 + " " + data[1] + " " + data[2]);
-						continue;
 					}
+					receiveList_Parts.clear();
+					int panelIndex = panelIndex(codeNo);
+					if (panelIndex >= 0 && codeCheck[panelIndex] && !codeCountCheck) {
+						// 受信済みのパネルは残りのブロックを読み取らない(並べて表示された複数のパネルが1フレームに写る場合)
+						return;
+					}
+					continue;
 				} else if (i == division - 1 && j == division - 1) {
 					if (loopCount == 2 && keepCheck == false) {
 						PatternKeep_First_str = mapOfPattern_First_str;
 						keepCheck = true;
 					}
-					switch (codeNo) {
-					case "赤赤":
-						if (codeCheck[0] == false) {
-							codeCheck[0] = true;
-							for (int j2 = 0; j2 < receiveList_Parts.size(); j2++) {
-								receiveList_Panel[0][j2] = receiveList_Parts.get(j2);
-							}
-							codeCountCheck();
-							receiveList_Parts.clear();
-						}
-						break;
-					case "緑緑":
-						if (codeCheck[1] == false) {
-							codeCheck[1] = true;
-							for (int j2 = 0; j2 < receiveList_Parts.size(); j2++) {
-								receiveList_Panel[1][j2] = receiveList_Parts.get(j2);
-							}
-							codeCountCheck();
-							receiveList_Parts.clear();
-						}
-						break;
-					case "青青":
-						if (codeCheck[2] == false) {
-							codeCheck[2] = true;
-							for (int j2 = 0; j2 < receiveList_Parts.size(); j2++) {
-								receiveList_Panel[2][j2] = receiveList_Parts.get(j2);
-							}
-							codeCountCheck();
-							receiveList_Parts.clear();
-						}
-						break;
-					case "白白":
-						if (codeCheck[3] == false) {
-							codeCheck[3] = true;
-							for (int j2 = 0; j2 < receiveList_Parts.size(); j2++) {
-								receiveList_Panel[3][j2] = receiveList_Parts.get(j2);
+					int panel = panelIndex(codeNo);
+					if (panel < 0) {
+						codeNoKeep = ' ';
+						codeNo = "";
+						receiveList_Parts.clear();
+					} else if (codeCheck[panel] == false) {
+						List<String> panelParts = receiveList_Parts;
+						if (panelAccumulator != null) {
+							if (!panelAccumulator.vote(panel, receiveList_Parts)) {
+								receiveList_Parts.clear();// 受信が確定するまで次のフレームの投票を待つ
+								continue;
 							}
-							codeCountCheck();
-							receiveList_Parts.clear();
+							panelParts = panelAccumulator.getSymbols(panel);
+							System.out.println(codeNo + "のパネルを" + panelAccumulator.getFrameCount(panel) + "フレームの投票で受信");
 						}
-						break;
-					case "赤緑":
-						if (codeCheck[4] == false) {
-							codeCheck[4] = true;
-							for (int j2 = 0; j2 < receiveList_Parts.size(); j2++) {
-								receiveList_Panel[4][j2] = receiveList_Parts.get(j2);
-							}
-							codeCountCheck();
-							receiveList_Parts.clear();
+						codeCheck[panel] = true;
+						for (int j2 = 0; j2 < panelParts.size(); j2++) {
+							receiveList_Panel[panel][j2] = panelParts.get(j2);
 						}
-						break;
-					default:
-						codeNoKeep = ' ';
-						codeNo = "";
+						codeCountCheck();
 						receiveList_Parts.clear();
-						break;
 					}
 				} else {
 					x = (int) (startX + (j * oneThirdWidth + (j + 1) * oneThirdWidth) / 2);
@@ -627,12 +690,12 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 					for (int k = 0; k < Constants_colorOfThree.NUMBER＿OF_POINT; k++) {
 						switch (k) {
 						case 0:
-							averageData = srcImage.get(y, x);// HSV各チャンネルを格納(y,x)なので注意
+							readPixel(markerPixels, cols, y, x, averageData);// HSV各チャンネルを格納(y,x)なので注意
 							Imgproc.circle(srcImage, new Point(x, y), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化
 							break;
 						case 1:
-							pointData = srcImage.get(y + Constants_colorOfThree.DISTANCE＿OF_POINT,
-									x - Constants_colorOfThree.DISTANCE＿OF_POINT);
+							readPixel(markerPixels, cols, y + Constants_colorOfThree.DISTANCE＿OF_POINT,
+									x - Constants_colorOfThree.DISTANCE＿OF_POINT, pointData);
 							Imgproc.circle(srcImage,
 									new Point(x - Constants_colorOfThree.DISTANCE＿OF_POINT,
 											y + Constants_colorOfThree.DISTANCE＿OF_POINT),
@@ -642,8 +705,8 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 							}
 							break;
 						case 2:
-							pointData = srcImage.get(y + Constants_colorOfThree.DISTANCE＿OF_POINT,
-									x + Constants_colorOfThree.DISTANCE＿OF_POINT);
+							readPixel(markerPixels, cols, y + Constants_colorOfThree.DISTANCE＿OF_POINT,
+									x + Constants_colorOfThree.DISTANCE＿OF_POINT, pointData);
 							Imgproc.circle(srcImage,
 									new Point(x + Constants_colorOfThree.DISTANCE＿OF_POINT,
 											y + Constants_colorOfThree.DISTANCE＿OF_POINT),
@@ -653,8 +716,8 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 							}
 							break;
 						case 3:
-							pointData = srcImage.get(y - Constants_colorOfThree.DISTANCE＿OF_POINT,
-									x + Constants_colorOfThree.DISTANCE＿OF_POINT);
+							readPixel(markerPixels, cols, y - Constants_colorOfThree.DISTANCE＿OF_POINT,
+									x + Constants_colorOfThree.DISTANCE＿OF_POINT, pointData);
 							Imgproc.circle(srcImage,
 									new Point(x + Constants_colorOfThree.DISTANCE＿OF_POINT,
 											y - Constants_colorOfThree.DISTANCE＿OF_POINT),
@@ -664,8 +727,8 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 							}
 							break;
 						case 4:
-							pointData = srcImage.get(y - Constants_colorOfThree.DISTANCE＿OF_POINT,
-									x - Constants_colorOfThree.DISTANCE＿OF_POINT);
+							readPixel(markerPixels, cols, y - Constants_colorOfThree.DISTANCE＿OF_POINT,
+									x - Constants_colorOfThree.DISTANCE＿OF_POINT, pointData);
 							Imgproc.circle(srcImage,
 									new Point(x - Constants_colorOfThree.DISTANCE＿OF_POINT,
 											y - Constants_colorOfThree.DISTANCE＿OF_POINT),
@@ -675,31 +738,37 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 							}
 							break;
 						}
-						hsvImageFrame.repaint();// パネルを再描画
 					}
 					for (int k = 0; k < averageData.length; k++) {
 						data[k] = (averageData[k] / Constants_colorOfThree.NUMBER＿OF_POINT);// 色相、彩度、明度それぞれの平均抽出
 					}
 					// ------------------------------------------------------------------------------------------------------------------------------------------
-					if (data[1] < 100 && data[2] >= 150) {// H（色相）S(彩度) V(明度)を元に色を判断;
+					switch (dataSymbolTable.classify(data)) {// H（色相）S(彩度) V(明度)を元に色を判断;
+					case Constants_colorOfThree.COLOR_SYMBOL_WHITE:
 						receiveList_Parts.add("4");// 白
 						colorPattern[loopCount] = "白";
-					} else if (data[2] < 100) {
+						break;
+					case Constants_colorOfThree.COLORENCODE_SPACE:
 						receiveList_Parts.add("space");// 黒
 						colorPattern[loopCount] = "s";
-					} else if (data[1] >= 100 && data[0] * 2 >= 0 && data[0] * 2 < 80) {
+						break;
+					case 1:
 						receiveList_Parts.add("1");// 赤
 						colorPattern[loopCount] = "赤";
-					} else if (data[1] >= 100 && data[0] * 2 >= 80 && data[0] * 2 < 148) {
+						break;
+					case 2:
 						receiveList_Parts.add("2");// 緑
 						colorPattern[loopCount] = "緑";
-					} else if (data[1] >= 100 && data[0] * 2 >= 148 && data[0] * 2 < 258) {
+						break;
+					case 3:
 						receiveList_Parts.add("3");// 青
 						colorPattern[loopCount] = "青";
-					} else {
+						break;
+					default:
 						receiveList_Parts.add("error");
 						missCount++;
 						colorPattern[loopCount] = "エラ";
+						break;
 					}
 					//					if (receiveList.isEmpty()
 					//							|| createTransmisstionImage2_colorOfThree.getTransmissionList().isEmpty()) {
@@ -800,6 +869,73 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 
 	}
 
+	/**
+	 * コード情報(№)からパネルの番号を求める
+	 *
+	 * @param codeNo
+	 *            コード情報(№)
+	 * @return パネルの番号(どのパネルにも当てはまらない場合は-1)
+	 */
+	private int panelIndex(String codeNo) {
+		switch (codeNo) {
+		case "赤赤":
+			return Constants_colorOfThree.PANELPATTERN_RED_RED;
+		case "緑緑":
+			return Constants_colorOfThree.PANELPATTERN_GREEN_GREEN;
+		case "青青":
+			return Constants_colorOfThree.PANELPATTERN_BLUE_BLUE;
+		case "白白":
+			return Constants_colorOfThree.PANELPATTERN_WHITE_WHITE;
+		case "赤緑":
+			return Constants_colorOfThree.PANELPATTERN_RED_GREEN;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * コード情報(№)の記号を色の文字に変換する
+	 *
+	 * @param symbol
+	 *            参照テーブルで求めた記号
+	 * @return 色の文字(どの色にも当てはまらない場合は空白)
+	 */
+	private char symbolToCodeNo(byte symbol) {
+		switch (symbol) {
+		case Constants_colorOfThree.COLOR_SYMBOL_WHITE:
+			return '白';
+		case 1:
+			return '赤';
+		case 2:
+			return '緑';
+		case 3:
+			return '青';
+		default:
+			return ' ';
+		}
+	}
+
+	/**
+	 * 一括で読み出した画素値から1画素分のHSV各チャンネルを取り出す
+	 *
+	 * @param pixels
+	 *            一括で読み出した画素値
+	 * @param cols
+	 *            画像の幅
+	 * @param y
+	 *            取得するy座標
+	 * @param x
+	 *            取得するx座標
+	 * @param data
+	 *            HSV各チャンネルの格納先
+	 */
+	private void readPixel(byte[] pixels, int cols, int y, int x, double[] data) {
+		int index = (y * cols + x) * Constants_colorOfThree.HSV_CH;
+		for (int c = 0; c < Constants_colorOfThree.HSV_CH; c++) {
+			data[c] = pixels[index + c] & 0xff;
+		}
+	}
+
 	/**
 	 * 全パネルのコードが取得できたかを判別
 	 */
@@ -821,51 +957,108 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 		Mat markerImage = new Mat(500, 500, 16);
 		List<MatOfPoint> contoursList = new ArrayList<MatOfPoint>();// 読み取った輪郭線を格納
 		List<MatOfPoint> dorawOutLineList = new ArrayList<>();// 認識した矩形マーカの輪郭線を格納
-		List<Mat> hsvList = new ArrayList<Mat>();
 		Mat webcamImage = new Mat();// webカメラのイメージ
+		latency.startFrame();
+		long stageStart = latency.start();
 		captureCamera.read(webcamImage);// webカメラの映像を画像保存
+		latency.add(ReceiveLatency_colorOfThree.STAGE_CAPTURE, stageStart);
 		cameraCheck(webcamImage);
-		//カメラ(設定項目ID) 露出(15) ゲイン(14) 明るさ(10) コントラスト(11) 色の強さ(12) 白バランス(17)
-		cameraCount++;
-		if (cameraCount == 100) {
-			System.out.println("露出：" + captureCamera.get(Constants_colorOfThree.ID_EXP));
-			System.out.println("ゲイン：" + captureCamera.get(Constants_colorOfThree.ID_GAIN));
-			System.out.println("明るさ：" + captureCamera.get(Constants_colorOfThree.ID_BRIGHT));
-			System.out.println("コントラスト：" + captureCamera.get(Constants_colorOfThree.ID_CON));
-			System.out.println("色の強さ：" + captureCamera.get(Constants_colorOfThree.ID_SAT));
-			System.out.println("白バランス：" + captureCamera.get(Constants_colorOfThree.ID_WHITE));
-			cameraCount = 0;
-		}
-		captureCamera.set(Constants_colorOfThree.ID_EXP, Constants_colorOfThree.EXP);
-		captureCamera.set(Constants_colorOfThree.ID_GAIN, Constants_colorOfThree.GAIN);
-		captureCamera.set(Constants_colorOfThree.ID_BRIGHT, Constants_colorOfThree.BRIGHT);
-		captureCamera.set(Constants_colorOfThree.ID_CON, Constants_colorOfThree.CON);
-		captureCamera.set(Constants_colorOfThree.ID_SAT, Constants_colorOfThree.SAT);
-		captureCamera.set(Constants_colorOfThree.ID_WHITE, Constants_colorOfThree.WHITE);
 		Mat processedImage = new Mat(webcamImage.rows(), webcamImage.cols(), webcamImage.type());
-		Mat hsvImage = new Mat(webcamImage.rows(), webcamImage.cols(), webcamImage.type());
-		Imgproc.cvtColor(webcamImage, hsvImage, Imgproc.COLOR_BGR2HSV);// HSV変換
-		Core.split(hsvImage, hsvList);// HSVでのマルチチャンネルをシングルチャネルとしてListにいれている（sizeは３）
-		Mat valueImage = hsvList.get(2).clone();// そこから最後のチャネルを取ってきて複製
-		Imgproc.threshold(valueImage, processedImage, 50, 255, Imgproc.THRESH_BINARY);// 画像の二値化
+		Mat frameImage;// マーカの切り出し元(画像全体をHSV変換しない場合はBGRのまま)
+		Mat valueImage;
+		stageStart = latency.start();
+		if (fullFrameHsv) {
+			List<Mat> hsvList = new ArrayList<Mat>();
+			Mat hsvImage = new Mat(webcamImage.rows(), webcamImage.cols(), webcamImage.type());
+			Imgproc.cvtColor(webcamImage, hsvImage, Imgproc.COLOR_BGR2HSV);// HSV変換
+			Core.split(hsvImage, hsvList);// HSVでのマルチチャンネルをシングルチャネルとしてListにいれている（sizeは３）
+			valueImage = hsvList.get(2).clone();// そこから最後のチャネルを取ってきて複製
+			frameImage = hsvImage;
+		} else {
+			// V(明度)はBGRの最大値なので、画像全体のHSV変換は行わずに求める
+			List<Mat> bgrList = new ArrayList<Mat>();
+			Core.split(webcamImage, bgrList);
+			valueImage = bgrList.get(0);
+			Core.max(valueImage, bgrList.get(1), valueImage);
+			Core.max(valueImage, bgrList.get(2), valueImage);
+			frameImage = webcamImage;
+		}
+		latency.add(ReceiveLatency_colorOfThree.STAGE_COLOR_CONVERSION, stageStart);
 		Mat hierarchyData = new Mat();// 読み取った輪郭線の階層情報
-		processedImageFrame.setSize(processedImage.width() + 40, processedImage.height() + 60);// ウィンドウサイズを取得画像に合ったサイズに
-		hsvImageFrame.setSize(markerImage.width() + 35, markerImage.height() + 55);// ウィンドウサイズを取得画像に合ったサイズに
-		// Imgproc.cvtColor(webc0amImage,
-		// processedImage,Imgproc.COLOR_BGR2GRAY);グレースケール化
-		// Imgproc.threshold(processedImage, processedImage, 0,
-		// 255,Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);// 二値化
-		Imgproc.findContours(processedImage, contoursList, hierarchyData, Imgproc.RETR_CCOMP, Imgproc.CHAIN_APPROX_SIMPLE);// 画像内の輪郭を検出
+		boolean markerTransformed = false;// このフレームでマーカを射影変換したか(自動露出用)
+		if (pyramidDetector != null) {
+			// 縮小画像で見つけた候補の周辺のみ元の解像度で二値化、輪郭検出を行う
+			processedImage = Mat.zeros(webcamImage.rows(), webcamImage.cols(), CvType.CV_8UC1);
+			for (Rect candidateRegion : pyramidDetector.findCandidateRegions(valueImage, 50, 1000)) {
+				Mat valueRegion = valueImage.submat(candidateRegion);
+				Mat processedRegion = processedImage.submat(candidateRegion);
+				stageStart = latency.start();
+				Imgproc.threshold(valueRegion, processedRegion, 50, 255, Imgproc.THRESH_BINARY);// 候補範囲の二値化
+				latency.add(ReceiveLatency_colorOfThree.STAGE_THRESHOLD, stageStart);
+				stageStart = latency.start();
+				Imgproc.findContours(processedRegion, contoursList, hierarchyData, Imgproc.RETR_CCOMP,
+						Imgproc.CHAIN_APPROX_SIMPLE, new Point(candidateRegion.x, candidateRegion.y));// 範囲内の輪郭を検出
+				latency.add(ReceiveLatency_colorOfThree.STAGE_FIND_CONTOURS, stageStart);
+				valueRegion.release();
+				processedRegion.release();
+				markerTransformed |= checkContours(contoursList, hierarchyData, dorawOutLineList, frameImage, markerImage);
+			}
+		} else {
+			stageStart = latency.start();
+			Imgproc.threshold(valueImage, processedImage, 50, 255, Imgproc.THRESH_BINARY);// 画像の二値化
+			latency.add(ReceiveLatency_colorOfThree.STAGE_THRESHOLD, stageStart);
+			// Imgproc.cvtColor(webc0amImage,
+			// processedImage,Imgproc.COLOR_BGR2GRAY);グレースケール化
+			// Imgproc.threshold(processedImage, processedImage, 0,
+			// 255,Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);// 二値化
+			stageStart = latency.start();
+			Imgproc.findContours(processedImage, contoursList, hierarchyData, Imgproc.RETR_CCOMP, Imgproc.CHAIN_APPROX_SIMPLE);// 画像内の輪郭を検出
+			latency.add(ReceiveLatency_colorOfThree.STAGE_FIND_CONTOURS, stageStart);
+			markerTransformed = checkContours(contoursList, hierarchyData, dorawOutLineList, frameImage, markerImage);
+		}
+		// カメラ設定値のずれの確認と自動露出(マーカを検出したフレームのみ露出を調整)
+		cameraProperty.update(markerTransformed ? markerImage : null);
+		if (processedImageSink != null) {
+			Imgproc.drawContours(processedImage, dorawOutLineList, -1, new Scalar(254, 0, 0), 5);// 輪郭画像にマーカ輪郭を表示
+			processedImageSink.show(processedImage);
+		}
+		latency.endFrame();
+	}
+
+	/**
+	 * 検出した輪郭を直線に近似し、カラー・コードマーカであればデコードする<br>
+	 * 処理後、輪郭リストはクリアされる(次の輪郭検出でリストが上書きされるため)。
+	 *
+	 * @param contoursList
+	 *            検出した輪郭
+	 * @param hierarchyData
+	 *            輪郭の階層情報
+	 * @param dorawOutLineList
+	 *            マーカ輪郭の描画リスト
+	 * @param frameImage
+	 *            マーカの切り出し元(HSV変換後、または画像全体をHSV変換しない場合はBGRのイメージ)
+	 * @param markerImage
+	 *            射影変換後のマーカの出力先
+	 * @return マーカを射影変換しmarkerImageに出力した場合はtrue
+	 */
+	private boolean checkContours(List<MatOfPoint> contoursList, Mat hierarchyData, List<MatOfPoint> dorawOutLineList,
+			Mat frameImage, Mat markerImage) {
+		boolean markerTransformed = false;
 		for (int i = 0; i < contoursList.size(); i++) {// 取得した輪郭の総数でループ
 			if (hierarchyData.get(0, i)[3] == -1) {// 内部輪郭を持つ輪郭を弾く
+				long stageStart = latency.start();
 				MatOfPoint2f ptmat2Temp = new MatOfPoint2f();// 画像処理の途中でMatOfPoint2fに一時変換するため
 				contoursList.get(i).convertTo(ptmat2Temp, CvType.CV_32FC2);// 画像処理のためMatOfPointをMatOfPoint2fに変換
 				Imgproc.approxPolyDP(ptmat2Temp, ptmat2Temp, 10, true);// 輪郭を直線に近似する
 				ptmat2Temp.convertTo(contoursList.get(i), CvType.CV_32S);// MatOfPoint2fをMatOfPointに再変換
+				latency.add(ReceiveLatency_colorOfThree.STAGE_APPROX_POLY, stageStart);
 				if (rectangleChecker(contoursList.get(i), 4000)) {
 					dorawOutLineList.add(contoursList.get(i));// マーカであることが確定した輪郭を描画リストに追加
 				}
-				if (markerChecker(contoursList.get(i), hsvImage, markerImage, 1000, division)) {// 輪郭が正方形であるかチェック
+				stageStart = latency.start();
+				boolean isMarker = markerChecker(contoursList.get(i), frameImage, markerImage, 1000, division);
+				latency.add(ReceiveLatency_colorOfThree.STAGE_MARKER_CHECKER, stageStart);
+				if (isMarker) {// 輪郭が正方形であるかチェック
 					if (codeNo.equals("赤赤") && codeCheck[0] == true) {
 						System.out.println("赤赤" + codeCheck[0]);
 					} else if (codeNo.equals("緑緑") && codeCheck[1] == true) {
@@ -877,16 +1070,20 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 					} else if (codeNo.equals("赤緑") && codeCheck[4] == true) {
 						System.out.println("赤緑" + codeCheck[4]);
 					} else {
-						transformMarker(markerImage, markerImage, TransformKey);
+						stageStart = latency.start();
+						transformMarker(frameImage, markerImage, TransformKey);
+						latency.add(ReceiveLatency_colorOfThree.STAGE_TRANSFORM_MARKER, stageStart);
+						markerTransformed = true;
 						// Imgproc.medianBlur(markerImage, markerImage, 3);//
 						// 画像のノイズ処理→平滑化
+						stageStart = latency.start();
 						colorDecorde(markerImage, 0, 0, markerImage.height(), markerImage.width(), division);
-						List<Mat> hsvList2 = new ArrayList<Mat>();
-						Core.split(markerImage, hsvList2);
-						Mat hImage = hsvList2.get(0).clone();
-						BufferedImage bufferedImageTemp1 = imageDrawing_colorOfThree.matToBufferedImage(hImage);// 描画のためmat型からbufferedImage型に変換
-						hsvImagePanel.setimage(bufferedImageTemp1);// 変換した画像をPanelに追加
-						hsvImageFrame.repaint();// パネルを再描画
+						latency.add(ReceiveLatency_colorOfThree.STAGE_COLOR_DECORDE, stageStart);
+						if (markerImageSink != null) {
+							List<Mat> hsvList2 = new ArrayList<Mat>();
+							Core.split(markerImage, hsvList2);
+							markerImageSink.show(hsvList2.get(0));
+						}
 						//						System.out.println("設定でのフレームレートは\n" + captureCamera.get(Videoio.CAP_PROP_FPS) + "\n現在のキャプチャモードは"
 						//								+ captureCamera.get(Videoio.CAP_MODE_BGR) + "\n明るさは"
 						//								+ captureCamera.get(Videoio.CAP_PROP_BRIGHTNESS) + "\nコントラストは"
@@ -905,12 +1102,8 @@ public class VisibleLightReceiver2_colorOfThree extends Thread {
 				}
 			}
 		}
-		Imgproc.drawContours(processedImage, dorawOutLineList, -1, new Scalar(254, 0, 0), 5);// 輪郭画像にマーカ輪郭を表示
 		contoursList.clear();// 輪郭リストをクリア
-		BufferedImage bufferedImageTemp = imageDrawing_colorOfThree.matToBufferedImage(processedImage);// 描画のためmat型からbufferedImage型に変換
-		processedImagePanel.setimage(bufferedImageTemp);// 変換した画像をPanelに追加
-		processedImageFrame.repaint();// パネルを再描画
-
+		return markerTransformed;
 	}
 
 	/**
@@ -0,0 +1,129 @@
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * 色補正の基準とする四隅のブロックの色<br>
+ * 想定値ではなく送信画像の元画像(四隅のマーカを含む画像)から、受信側が四隅の色を取得するのと同じブロックの中心の色を測定する。<br>
+ * 四隅のブロックは送信データによらないため、送信画像の元画像と行列分割値が同じであれば1回の測定で済む。
+ *
+ * @see ColorCalibration
+ * @see CreateTransmisstionImage2#colorEncode(Mat, double, double, double, double, int)
+ * @author Ogi
+ * @version 1.0
+ */
+public class CalibrationReference {
+
+	private int[] hues;// 分類A,B,C,Dのブロックの色相(度数)
+	private int saturation;// 四隅のブロックのS(彩度)の平均
+	private int value;// 四隅のブロックのV(明度)の平均
+
+	/**
+	 * @param hues
+	 *            分類A,B,C,Dのブロックの色相(度数)
+	 * @param saturation
+	 *            四隅のブロックのS(彩度)の平均
+	 * @param value
+	 *            四隅のブロックのV(明度)の平均
+	 */
+	public CalibrationReference(int[] hues, int saturation, int value) {
+		this.hues = hues.clone();
+		this.saturation = saturation;
+		this.value = value;
+	}
+
+	/**
+	 * 送信画像の元画像の四隅のブロックの色を測定する<br>
+	 * 送信側がカラー・コードを描画する範囲(CreateTransmisstionImage2と同じく画像の端から42ピクセル内側)を
+	 * 行列分割値で分割し、四隅のブロックの中心の色を取得する。
+	 *
+	 * @param markerImage
+	 *            四隅のマーカを含む送信画像の元画像(BGR)
+	 * @param division
+	 *            マーカの行列分割値
+	 * @return 測定した基準の色
+	 * @throws IllegalArgumentException
+	 *             四隅のブロックの色相がA,B,C,Dに1つずつ分類できない場合(四隅のマーカのない画像等)
+	 */
+	public static CalibrationReference measure(Mat markerImage, int division) {
+		// colorEncode(markerImage, 42, 42, markerImage.height() - 43, markerImage.width() - 43, division)と同じ範囲
+		double startX = 42;
+		double startY = 42;
+		double oneThirdWidth = (markerImage.height() - 43 - startX) / division;
+		double oneThirdHeight = (markerImage.width() - 43 - startY) / division;
+		Mat cornerColorImage = new Mat(Constants.SIDE_OF_THE_RECTANGLE, 1, CvType.CV_8UC3);
+		byte[] data = new byte[Constants.HSV_CH];
+		int boxCount = 0;
+		for (int i = 0; i < division; i += division - 1) {
+			for (int j = 0; j < division; j += division - 1) {
+				int x = (int) (startX + (j + 0.5) * oneThirdWidth);
+				int y = (int) (startY + (i + 0.5) * oneThirdHeight);
+				markerImage.get(y, x, data);// 各チャンネルを格納(y,x)なので注意
+				cornerColorImage.put(boxCount++, 0, data);
+			}
+		}
+		Imgproc.cvtColor(cornerColorImage, cornerColorImage, Imgproc.COLOR_BGR2HSV);
+
+		int[] hues = new int[Constants.SIDE_OF_THE_RECTANGLE];
+		boolean[] found = new boolean[Constants.SIDE_OF_THE_RECTANGLE];
+		int saturationSum = 0;
+		int valueSum = 0;
+		for (boxCount = 0; boxCount < Constants.SIDE_OF_THE_RECTANGLE; boxCount++) {
+			cornerColorImage.get(boxCount, 0, data);
+			int hue = (data[0] & 0xff) * 2;
+			int cornerClass = classifyHue(hue) - 'A';
+			if (found[cornerClass]) {
+				cornerColorImage.release();
+				throw new IllegalArgumentException("四隅のブロックの色相を分類できません。四隅のマーカを含む画像と行列分割値を確認してください");
+			}
+			found[cornerClass] = true;
+			hues[cornerClass] = hue;
+			saturationSum += data[1] & 0xff;
+			valueSum += data[2] & 0xff;
+		}
+		cornerColorImage.release();
+		return new CalibrationReference(hues, saturationSum / Constants.SIDE_OF_THE_RECTANGLE,
+				valueSum / Constants.SIDE_OF_THE_RECTANGLE);
+	}
+
+	/**
+	 * 四隅のブロックの色相を分類する(VisibleLightReceiver2.markerCheckerでの向きの判断と同じ分類)
+	 *
+	 * @param hue
+	 *            色相(度数)
+	 * @return 'A'～'D'
+	 */
+	public static char classifyHue(int hue) {
+		if (hue <= 45 || hue >= 330) {
+			return 'A';
+		} else if (hue <= 135) {
+			return 'B';
+		} else if (hue <= 225) {
+			return 'C';
+		}
+		return 'D';
+	}
+
+	/**
+	 * @param cornerClass
+	 *            四隅のブロックの色相の分類('A'～'D')
+	 * @return その分類のブロックの色相(度数)
+	 */
+	public int getHue(char cornerClass) {
+		return hues[cornerClass - 'A'];
+	}
+
+	public int getSaturation() {
+		return saturation;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "H(A,B,C,D)=" + hues[0] + "," + hues[1] + "," + hues[2] + "," + hues[3] + " S=" + saturation + " V="
+				+ value;
+	}
+}
@@ -0,0 +1,64 @@
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * webカメラからフレームを取得する
+ *
+ * @see FrameSource
+ * @author Ogi
+ * @version 1.0
+ */
+public class CameraFrameSource implements FrameSource {
+
+	private VideoCapture captureCamera;
+
+	/**
+	 * @param cameraIndex
+	 *            使用webカメラの番号
+	 */
+	public CameraFrameSource(int cameraIndex) {
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);// Opencvの利用のため
+		captureCamera = new VideoCapture(cameraIndex);// 使用webカメラの宣言
+	}
+
+	public boolean read(Mat frame) {
+		if (captureCamera.read(frame)) {
+			return true;
+		}
+		frame.release();// 以前のフレームを残さない
+		return false;
+	}
+
+	public boolean isOpened() {
+		return captureCamera.isOpened();
+	}
+
+	public void release() {
+		captureCamera.release();
+	}
+
+	/**
+	 * カメラの設定値を直接操作するためにVideoCaptureを返す
+	 *
+	 * @return 使用webカメラ
+	 */
+	public VideoCapture getVideoCapture() {
+		return captureCamera;
+	}
+
+	/**
+	 * カメラの現在の設定値を表示する
+	 */
+	public void printCaptureProperty() {
+		System.out.println("設定でのフレームレートは\n" + captureCamera.get(Videoio.CAP_PROP_FPS) + "\n現在のキャプチャモードは"
+				+ captureCamera.get(Videoio.CAP_MODE_BGR) + "\n明るさは"
+				+ captureCamera.get(Videoio.CAP_PROP_BRIGHTNESS) + "\nコントラストは"
+				+ captureCamera.get(Videoio.CAP_PROP_CONTRAST) + "\n彩度は"
+				+ captureCamera.get(Videoio.CAP_PROP_SATURATION) + "\n色相は"
+				+ captureCamera.get(Videoio.CAP_PROP_HUE) + "\nゲインは"
+				+ captureCamera.get(Videoio.CAP_PROP_GAIN) + "\n露出は"
+				+ captureCamera.get(Videoio.CAP_PROP_EXPOSURE));
+	}
+}
@@ -0,0 +1,240 @@
+import java.util.Random;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * 光学チャネルシミュレータを通して送信から受信までを繰り返し、スループットと誤り率を測定する<br>
+ * 画面もカメラも利用しないため、ヘッドレスのLinux環境でも実行できる。<br>
+ * 1回の試行では送信画像1枚をOpticalChannelSimulatorで劣化させたフレームを受信機に入力し、
+ * 受信に成功するかframeLimit枚を使い切るまでの時間を測る。<br>
+ * 受信に成功したデータはCRCで確認済みのためビット誤りはほぼ0となる。チャネルの誤りは、CRCで棄却したものも含め
+ * マーカを検出した全てのパネルの誤り訂正前のブロック誤り率で見ること。<br>
+ * 測定の前に劣化を加えないフレームで受信できることを確認し、受信できない場合(四隅のマーカのない画像等)は例外を投げる。<br>
+ * 6番目の引数にcalibrationを指定すると、同じ乱数の種の試行を四隅のブロックによる色補正なし、ありの順に行い、
+ * 受信失敗率を比較する(色補正を既定で有効にする前の確認用)。<br>
+ * 引数:[試行回数] [送信データのbyte数] [1試行の最大フレーム数] [乱数の種] [四隅のマーカを含む画像(既定はConstants.MARK2)] [calibration]
+ *
+ * @see OpticalChannelSimulator
+ * @see VisibleLightReceiver2
+ * @see CalibrationReference
+ * @author Ogi
+ * @version 1.0
+ */
+public class ChannelSimulation implements PanelListener {
+
+	private static final int FRAME_WIDTH = 640;
+	private static final int FRAME_HEIGHT = 480;
+	private static final int CLEAN_TRIALS = 3;// 劣化を加えずに受信を確認する試行回数
+
+	private byte[] data;
+	private Mat panel;
+	private CreateTransmisstionImage2 transmitter;
+	private int frameLimit;
+	private CalibrationReference calibrationReference;// 四隅のブロックによる色補正の基準の色(補正しない場合はnull)
+
+	private int trialCount;
+	private int receivedPanels;
+	private int totalFrames;
+	private long totalNanos;
+	private long receivedBits;
+	private long bitErrors;
+	private int decodedPanels;// マーカを検出してデコードしたパネル数(CRCで棄却したものを含む)
+	private int rejectedPanels;// 誤り訂正とCRCの確認に失敗したパネル数
+	private long symbolCount;
+	private long symbolErrors;
+
+	/**
+	 * @param data
+	 *            送信データ
+	 * @param panel
+	 *            四隅のマーカを含む送信画像の元画像(BGR)
+	 * @param frameLimit
+	 *            1試行の最大フレーム数
+	 */
+	public ChannelSimulation(byte[] data, Mat panel, int frameLimit) {
+		this.data = data;
+		this.panel = panel;
+		this.frameLimit = frameLimit;
+		transmitter = new CreateTransmisstionImage2(data, panel, null);
+		if (transmitter.getDivision() == 0) {
+			throw new IllegalArgumentException("送信データが大きすぎるため測定できません");
+		}
+		transmitter.run();// 送信画像をpanelに描画(表示先がないため別スレッドにはしない)
+	}
+
+	public static void main(String[] args) {
+		int trials = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int dataLength = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int frameLimit = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+		String markerFile = args.length > 4 ? args[4] : Constants.MARK2;
+		boolean compareCalibration = args.length > 5 && args[5].equals("calibration");
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);// Opencvの利用のため
+
+		Mat panel = Imgcodecs.imread(markerFile);
+		if (panel.empty()) {
+			throw new IllegalStateException("四隅のマーカを含む画像" + markerFile + "を読み込めません");
+		}
+		byte[] data = new byte[dataLength];
+		new Random(seed).nextBytes(data);
+		ChannelSimulation simulation = new ChannelSimulation(data, panel, frameLimit);
+
+		// 劣化なしで全て受信できなければ、劣化ありの結果は意味を持たない
+		if (!simulation.runClean(seed)) {
+			throw new IllegalStateException("劣化を加えないフレームで受信できません(" + simulation.receivedPanels + "/"
+					+ simulation.trialCount + "回受信、" + simulation.bitErrors + "bit誤り)。マーカ画像と行列分割値を確認してください");
+		}
+		System.out.println("劣化なしの確認:" + CLEAN_TRIALS + "回全て受信");
+		simulation.runTrials(trials, seed);
+		if (compareCalibration) {
+			System.out.println("四隅のブロックによる色補正なし");
+		}
+		simulation.printResult();
+		if (compareCalibration) {
+			// 同じ乱数の種で同じ劣化を加え、色補正の有無のみを変える
+			simulation.calibrationReference = CalibrationReference.measure(panel, simulation.transmitter.getDivision());
+			simulation.runTrials(trials, seed);
+			System.out.println("四隅のブロックによる色補正あり(基準 " + simulation.calibrationReference + ")");
+			simulation.printResult();
+		}
+		panel.release();
+	}
+
+	/**
+	 * 試行結果を消去し、劣化を加えたフレームでtrials回受信する
+	 *
+	 * @param trials
+	 *            試行回数
+	 * @param seed
+	 *            乱数の種(試行ごとに1ずつ増やす)
+	 */
+	private void runTrials(int trials, long seed) {
+		reset();
+		for (int trial = 0; trial < trials; trial++) {
+			runTrial(new OpticalChannelSimulator(FRAME_WIDTH, FRAME_HEIGHT, frameLimit, seed + trial));
+		}
+	}
+
+	/**
+	 * 劣化を加えずにCLEAN_TRIALS回受信する
+	 *
+	 * @param seed
+	 *            乱数の種
+	 * @return 全て誤りなく受信できた場合はTrue
+	 */
+	private boolean runClean(long seed) {
+		reset();
+		for (int trial = 0; trial < CLEAN_TRIALS; trial++) {
+			OpticalChannelSimulator channel = new OpticalChannelSimulator(FRAME_WIDTH, FRAME_HEIGHT, frameLimit,
+					seed + trial);
+			channel.setCornerShift(0);
+			channel.setBlurSigma(0);
+			channel.setGammaRange(0);
+			channel.setWhiteBalanceRange(0);
+			channel.setNoiseSigma(0);
+			channel.setJpegQuality(0);
+			runTrial(channel);
+		}
+		return receivedPanels == trialCount && bitErrors == 0;
+	}
+
+	/**
+	 * 試行結果を消去する
+	 */
+	private void reset() {
+		trialCount = 0;
+		receivedPanels = 0;
+		totalFrames = 0;
+		totalNanos = 0;
+		receivedBits = 0;
+		bitErrors = 0;
+		decodedPanels = 0;
+		rejectedPanels = 0;
+		symbolCount = 0;
+		symbolErrors = 0;
+	}
+
+	/**
+	 * 送信画像を1枚登録したシミュレータから受信し、結果を集計する
+	 *
+	 * @param channel
+	 *            劣化を設定済みのシミュレータ
+	 */
+	private void runTrial(OpticalChannelSimulator channel) {
+		channel.addPanel(panel);
+		VisibleLightReceiver2 receiver = new VisibleLightReceiver2(null, channel, null, null);
+		receiver.setDivision(transmitter.getDivision());
+		receiver.setCornerCalibration(calibrationReference);
+		receiver.setPanelListener(this);
+		long start = System.nanoTime();
+		receiver.startRunning();
+		receiver.waitForStop();
+		totalNanos += System.nanoTime() - start;
+		totalFrames += channel.getFrameCount();
+		trialCount++;
+		byte[] receiveBytes = receiver.getReceiveBytes();
+		if (receiveBytes != null) {
+			receivedPanels++;
+			receivedBits += (long) data.length * Byte.SIZE;
+			bitErrors += countBitErrors(data, receiveBytes);
+		}
+		channel.release();
+	}
+
+	/**
+	 * デコードした全てのパネルについて、誤り訂正前のブロックの読み取り誤りを集計する(受信機のデコードステージから呼び出される)
+	 */
+	@Override
+	public void panelDecoded(SymbolBuffer symbols, boolean accepted) {
+		decodedPanels++;
+		if (!accepted) {
+			rejectedPanels++;
+		}
+		SymbolBuffer sent = transmitter.getTransmissionSymbols();
+		for (int i = 0; i < sent.size(); i++) {
+			if (i >= symbols.size() || sent.get(i) != symbols.get(i)) {
+				symbolErrors++;
+			}
+		}
+		symbolCount += sent.size();
+	}
+
+	/**
+	 * 集計結果を表示する
+	 */
+	private void printResult() {
+		double seconds = totalNanos / 1e9;
+		System.out.println("試行回数:" + trialCount + " 受信成功:" + receivedPanels + " フレーム数:" + totalFrames);
+		System.out.println("受信失敗率(" + frameLimit + "フレーム以内に受信できなかった試行):"
+				+ (trialCount > 0 ? String.valueOf((double) (trialCount - receivedPanels) / trialCount) : "試行なし"));
+		System.out.println("処理時間:" + seconds + "秒 (" + (totalFrames / seconds) + "フレーム/秒)");
+		System.out.println("スループット:" + ((receivedBits - bitErrors) / seconds) + "bit/秒");
+		System.out.println("ビット誤り率(CRCで確認済みの受信データ):" + (receivedBits > 0 ? String.valueOf((double) bitErrors / receivedBits) : "受信なし"));
+		System.out.println("デコードしたパネル:" + decodedPanels + " CRCで棄却:" + rejectedPanels);
+		System.out.println("ブロック誤り率(デコードした全パネルの誤り訂正前):"
+				+ (symbolCount > 0 ? String.valueOf((double) symbolErrors / symbolCount) : "デコードなし"));
+	}
+
+	/**
+	 * 送信データと受信データのビットの不一致を数える(長さが異なる場合、足りない分は全て誤りとする)
+	 *
+	 * @param sent
+	 *            送信データ
+	 * @param received
+	 *            受信データ
+	 * @return 一致しないビット数
+	 */
+	private static long countBitErrors(byte[] sent, byte[] received) {
+		long errors = 0;
+		for (int i = 0; i < sent.length; i++) {
+			if (i < received.length) {
+				errors += Integer.bitCount((sent[i] ^ received[i]) & 0xff);
+			} else {
+				errors += Byte.SIZE;
+			}
+		}
+		return errors;
+	}
+}
@@ -0,0 +1,121 @@
+import org.opencv.core.Mat;
+
+/**
+ * マーカ四隅の基準ブロックの色からフレームごとの色補正を求める<br>
+ * 四隅の色相と基準の色相の差の平均だけ色相をずらし、S(彩度)とV(明度)は基準との比を掛けて、
+ * 色判断のしきい値を周囲の明るさや画面の白色点に合わせて移動したのと同じ結果を得る。<br>
+ * 補正はチャンネルごとの変換表で行うため、HsvSymbolTableを作り直さずに1ブロックにつき配列の参照のみで済む。
+ *
+ * @see VisibleLightReceiver2
+ * @see CalibrationReference
+ * @see HsvSymbolTable
+ * @author Ogi
+ * @version 1.0
+ */
+public class ColorCalibration {
+
+	private static final int HUE_RANGE = 180;// OpenCVのH(色相)は0～179(度数の1/2)
+	private static final int CHANNEL_RANGE = 256;
+
+	private int[] hueMap;// 補正後のH(色相)
+	private int[] saturationMap;// 補正後のS(彩度)
+	private int[] valueMap;// 補正後のV(明度)
+	private int hueShift;// 色相のずれ(度数)
+	private double saturationGain;
+	private double valueGain;
+
+	public ColorCalibration() {
+		hueMap = new int[CHANNEL_RANGE];
+		saturationMap = new int[CHANNEL_RANGE];
+		valueMap = new int[CHANNEL_RANGE];
+		reset();
+	}
+
+	/**
+	 * 補正を行わない状態に戻す
+	 */
+	public void reset() {
+		hueShift = 0;
+		saturationGain = 1;
+		valueGain = 1;
+		buildMaps();
+	}
+
+	/**
+	 * 四隅のブロックの色から補正を求める
+	 *
+	 * @param cornerColorImage
+	 *            四隅のブロックの画素(HSV、4行1列)
+	 * @param cornerClasses
+	 *            四隅のブロックの色相の分類('A'～'D')
+	 * @param reference
+	 *            送信画像の元画像から測定した四隅のブロックの色
+	 */
+	public void update(Mat cornerColorImage, char[] cornerClasses, CalibrationReference reference) {
+		byte[] data = new byte[Constants.HSV_CH];
+		int hueDifference = 0;
+		int saturationSum = 0;
+		int valueSum = 0;
+		for (int i = 0; i < cornerClasses.length; i++) {
+			cornerColorImage.get(i, 0, data);
+			int hue = (data[0] & 0xff) * 2;
+			int referenceHue = reference.getHue(cornerClasses[i]);
+			hueDifference += Math.floorMod(hue - referenceHue + 180, 360) - 180;// -180～179度の差
+			saturationSum += data[1] & 0xff;
+			valueSum += data[2] & 0xff;
+		}
+		int count = cornerClasses.length;
+		hueShift = Math.min(Math.max(Math.round(hueDifference / (float) count), -Constants.CALIBRATION_MAX_HUE_SHIFT),
+				Constants.CALIBRATION_MAX_HUE_SHIFT);
+		saturationGain = gain(reference.getSaturation(), saturationSum / (double) count);
+		valueGain = gain(reference.getValue(), valueSum / (double) count);
+		buildMaps();
+	}
+
+	/**
+	 * HSV各チャンネルの値を補正する
+	 *
+	 * @param data
+	 *            HSV各チャンネルの値(補正結果で上書きされる)
+	 */
+	public void correct(double[] data) {
+		data[0] = hueMap[(int) data[0]];
+		data[1] = saturationMap[(int) data[1]];
+		data[2] = valueMap[(int) data[2]];
+	}
+
+	public int getHueShift() {
+		return hueShift;
+	}
+
+	public double getSaturationGain() {
+		return saturationGain;
+	}
+
+	public double getValueGain() {
+		return valueGain;
+	}
+
+	/**
+	 * 基準値と測定値の比を上限、下限の範囲に収める
+	 */
+	private static double gain(int reference, double measured) {
+		if (measured <= 0) {
+			return Constants.CALIBRATION_MAX_GAIN;
+		}
+		return Math.min(Math.max(reference / measured, 1 / Constants.CALIBRATION_MAX_GAIN),
+				Constants.CALIBRATION_MAX_GAIN);
+	}
+
+	/**
+	 * 現在の補正値からチャンネルごとの変換表を作成する
+	 */
+	private void buildMaps() {
+		int shift = Math.round(hueShift / 2f);// 度数からOpenCVのH(色相)の単位へ
+		for (int i = 0; i < CHANNEL_RANGE; i++) {
+			hueMap[i] = Math.floorMod(i - shift, HUE_RANGE);
+			saturationMap[i] = (int) Math.min(Math.round(i * saturationGain), CHANNEL_RANGE - 1);
+			valueMap[i] = (int) Math.min(Math.round(i * valueGain), CHANNEL_RANGE - 1);
+		}
+	}
+}
@@ -55,6 +55,54 @@ public final class Constants {
 	public static final byte BLOC_COLLAR_OF_ORANGE=7;
 	public static final byte BLOC_COLLAR_OF_PURPLE=8;
 	public static final byte BLOC_COLLAR_OF_WHITE=0;
+	//色判断のしきい値 S(彩度)がこれ未満なら白または無彩色
+	public static final int SATURATION_THRESHOLD = 100;
+	//色判断のしきい値 V(明度)がこれ以上かつ低彩度なら白
+	public static final int WHITE_VALUE_THRESHOLD = 150;
+	//色判断のしきい値 V(明度)がこれ未満なら黒
+	public static final int BLACK_VALUE_THRESHOLD = 100;
+	//色相の区切り(度数) 赤、オレンジ、黄色、緑、水色、青、紫、マゼンタの順
+	public static final int[] COLLAR_HUE_BOUNDARIES = { 0, 20, 35, 80, 148, 195, 258, 300, 330 };
+	//色相の区切りごとの記号(送信機のカラー・コード番号)
+	public static final byte[] COLLAR_HUE_SYMBOLS = { 1, 7, 4, 2, 5, 3, 8, 6 };
+	//射影変換後のマーカ画像の一辺のピクセル数
+	public static final int MARKER_IMAGE_SIZE = 500;
+	//受信パイプラインのステージ数(キャプチャ、マーカ検出、デコード、プレビュー)
+	public static final byte PIPELINE_STAGE_COUNT = 4;
+	//ステージ間キューの容量(溢れた場合は古いフレームから捨てる)
+	public static final byte PIPELINE_QUEUE_SIZE = 1;
+	//ステージ間キューの待ち時間(ミリ秒)、受信中断の確認間隔
+	public static final long PIPELINE_POLL_MILLIS = 100;
+	//マーカ追跡で画像全体から探し直すまでの連続検出失敗回数
+	public static final byte TRACKING_MISS_LIMIT = 5;
+	//マーカ追跡の探索範囲の広げ幅(マーカの大きさに対する割合)
+	public static final double TRACKING_MARGIN_RATIO = 0.25;
+	//縮小画像でのマーカ検出の縮小回数(0:利用しない 1:1/2 2:1/4)
+	public static final byte PYRAMID_LEVEL = 0;
+	//縮小画像で見つけた候補の探索範囲の広げ幅(縮小画像でのピクセル数)
+	public static final byte PYRAMID_REGION_MARGIN = 4;
+	//複数のマーカをデコードする場合に1フレームでデコードステージに渡す四角形の上限
+	public static final byte MULTI_MARKER_LIMIT = 16;
+	//リード・ソロモン符号で1ブロック(最大255byte)に付加するパリティのbyte数(0:誤り訂正を行わない)
+	public static final byte RS_PARITY_BYTES = 8;
+	//色補正で色相をずらす上限(度数)
+	public static final int CALIBRATION_MAX_HUE_SHIFT = 20;
+	//色補正でS(彩度)、V(明度)に掛ける倍率の上限(下限は逆数)
+	public static final double CALIBRATION_MAX_GAIN = 1.5;
+	//光学チャネルシミュレータ:フレームの高さに対するパネルの一辺の大きさ
+	public static final double SIMULATOR_PANEL_SCALE = 0.7;
+	//光学チャネルシミュレータ:パネルの四隅をずらす幅の上限(パネルの一辺に対する割合)
+	public static final double SIMULATOR_CORNER_SHIFT = 0.08;
+	//光学チャネルシミュレータ:ぼかしの標準偏差の上限(ピクセル)
+	public static final double SIMULATOR_BLUR_SIGMA = 1.5;
+	//光学チャネルシミュレータ:ガンマ値の1からの変化幅
+	public static final double SIMULATOR_GAMMA_RANGE = 0.3;
+	//光学チャネルシミュレータ:白バランスでB,G,Rそれぞれに掛ける倍率の1からの変化幅
+	public static final double SIMULATOR_WHITE_BALANCE_RANGE = 0.15;
+	//光学チャネルシミュレータ:センサノイズの標準偏差(画素値)
+	public static final double SIMULATOR_NOISE_SIGMA = 6;
+	//光学チャネルシミュレータ:JPEG圧縮の品質(0～100、0以下なら圧縮しない)
+	public static final int SIMULATOR_JPEG_QUALITY = 75;
 
 	private Constants() {
 	}
@@ -0,0 +1,46 @@
+/**
+ * CRC-16/CCITT(生成多項式x^16 + x^12 + x^5 + 1、初期値0xffff)の計算<br>
+ * 256通りの剰余を最初に表にしておき、1byteにつき表の参照1回で計算する。
+ *
+ * @see PanelPayload
+ * @author Ogi
+ * @version 1.0
+ */
+public class Crc16 {
+
+	private static final int POLYNOMIAL = 0x1021;
+	private static final int INITIAL_VALUE = 0xffff;
+	private static final int[] TABLE = new int[256];
+
+	static {
+		for (int i = 0; i < TABLE.length; i++) {
+			int crc = i << 8;
+			for (int bit = 0; bit < 8; bit++) {
+				crc = (crc & 0x8000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+			}
+			TABLE[i] = crc & 0xffff;
+		}
+	}
+
+	private Crc16() {
+	}
+
+	/**
+	 * 配列の一部のCRCを求める
+	 *
+	 * @param data
+	 *            対象のデータ
+	 * @param offset
+	 *            開始位置
+	 * @param length
+	 *            byte数
+	 * @return CRC(下位16bit)
+	 */
+	public static int compute(byte[] data, int offset, int length) {
+		int crc = INITIAL_VALUE;
+		for (int i = offset; i < offset + length; i++) {
+			crc = ((crc << 8) ^ TABLE[((crc >> 8) ^ data[i]) & 0xff]) & 0xffff;
+		}
+		return crc;
+	}
+}
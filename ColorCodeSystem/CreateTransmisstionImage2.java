@@ -1,13 +1,9 @@
-import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import javax.imageio.ImageIO;
-import javax.swing.JFrame;
 
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
@@ -23,20 +19,22 @@ import org.opencv.imgproc.Imgproc;
  * getDecodeList()でListを外部クラスに渡し、マッチテストは外部クラスで行う。<br>
  * VisibleLightReceiver2と対応しており、VisibleLightReceiver1と互換性を持たない。
  * フィールド変数であるdivisionの値をVisibleLightReceiver2のdivisionと揃えること。<br>
+ * 画像データはデータ長とCRCを付加したPanelPayloadの形式で配置し、
+ * Constants.RS_PARITY_BYTESが1以上の場合はリード・ソロモン符号のパリティも付加する。<br>
+ * colorEncodeは処理速度の測定(ColorCodeSystemBenchmark)で直接呼び出すためパッケージプライベートとしている。<br>
  *
  * @see VisibleLightReceiver2
+ * @see PanelPayload
+ * @see ReedSolomon
  * @author Ogi
  * @version 1.0
  */
 public class CreateTransmisstionImage2 extends Thread {
 
-	private JFrame transmisstionImageFrame;
+	private PreviewSink transmisstionImageSink;// 送信画像の表示先(nullの場合は表示しない)
 	private BufferedImage readImage;
 	private Mat markerImage;
 
-	private int dimensionSetSize_Rows;
-	private int dimensionSetSize_cols;
-
 	private File imgFileIn;
 	private File imgFileOut;
 
@@ -44,12 +42,11 @@ public class CreateTransmisstionImage2 extends Thread {
 	private String inputFileName = (Constants.IN_IMG_PATH);
 	private String outputFileName = (Constants.OUT_IMG_PATH);
 
-	private ImageDrawing imageDrawing;
-	private ImageDrawing transmisstionImagePanel;
-
-	private List<String> transmissionList;
+	private SymbolBuffer transmissionSymbols;// 送信したブロックの記号
 
 	private byte[] outImgBytes;// 画像のバイナリデータ
+	private byte[] encodedBytes;// データ長、CRC、パリティを付加したブロックに配置するデータ
+	private ReedSolomon reedSolomon;// 誤り訂正(利用しない場合はnull)
 
 	/*
 	 * division:ブロックの個数をデータの大きさに基づいて設定(colorEncodeSize(byte[] outBytes))している
@@ -58,17 +55,22 @@ public class CreateTransmisstionImage2 extends Thread {
 	private int division;
 
 	public CreateTransmisstionImage2() {
+		this(new SwingPreviewSink("送信画像ver2", Constants.ROW_MARGIN, Constants.COL_MARGIN));// 加工画像用ウィンドウフレーム,設定
+	}
+
+	/**
+	 * 送信画像の表示先を指定する場合に利用する<br>
+	 * 表示先にnullを渡すとウィンドウを生成せず、カラー・コードの生成のみを行う。
+	 *
+	 * @param transmisstionImageSink
+	 *            送信画像の表示先(表示しない場合はnull)
+	 */
+	public CreateTransmisstionImage2(PreviewSink transmisstionImageSink) {
 		// Opencvの利用のため
 		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
-		// 加工画像用ウィンドウフレーム,設定
-		transmisstionImageFrame = new JFrame("送信画像ver2");
-		transmisstionImageFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
-		// 各種画像を載せるパネル
-		transmisstionImagePanel = new ImageDrawing();
-		transmisstionImageFrame.setContentPane(transmisstionImagePanel);
+		this.transmisstionImageSink = transmisstionImageSink;
 		imgFileIn = new File(inputFileName);
 		imgFileOut = new File(outputFileName);
-		imageDrawing = new ImageDrawing();
 		outImgBytes = new byte[fileChecker(imgFileIn)];
 		// ファイルの有無をチェック
 		if (imgFileIn.exists() && imgFileOut.exists()) {
@@ -86,23 +88,9 @@ public class CreateTransmisstionImage2 extends Thread {
 			outImgBytes = null;
 			e.printStackTrace();
 		}
-		// エンコードを行う情報リスト
-		transmissionList = new ArrayList<String>();
-
-		// カラーコードのサイズ設定
-		colorEncodeSize(outImgBytes);
 		// 四隅のマーカ導入
 		markerImage = Imgcodecs.imread(Constants.MARK2);
-		dimensionSetSize_Rows = (markerImage.rows() + Constants.ROW_MARGIN);
-		dimensionSetSize_cols = (markerImage.cols() + Constants.COL_MARGIN);
-		transmisstionImageFrame.setSize(new Dimension(dimensionSetSize_Rows, dimensionSetSize_cols));
-		if ((division = colorEncodeSize(outImgBytes)) != 0) {
-			System.out.println("今回のブロックの数は" + (outImgBytes.length * Constants.BLOCK_OF_BYTE) + "個なので" + division + "×"
-					+ division + "のカラーコードのサイズに設定します");
-		} else {
-			System.out.println("サイズ設定でのエラーが発生したため、サイズの設定をキャンセルしました");
-		}
-
+		prepareEncode();
 		// System.out.println((Integer.toBinaryString(outImgBytes[0]&0xff)));
 		// System.out.println((byte) 0x89);
 		// int g = 0;
@@ -126,14 +114,54 @@ public class CreateTransmisstionImage2 extends Thread {
 
 	}
 
+	/**
+	 * 送信するデータとマーカ画像を直接指定する場合に利用する(記録したデータでの処理速度の測定など)<br>
+	 * ファイルの読み込みは行わない。
+	 *
+	 * @param outImgBytes
+	 *            送信するデータ
+	 * @param markerImage
+	 *            四隅のマーカを含む送信画像の元画像
+	 * @param transmisstionImageSink
+	 *            送信画像の表示先(表示しない場合はnull)
+	 */
+	public CreateTransmisstionImage2(byte[] outImgBytes, Mat markerImage, PreviewSink transmisstionImageSink) {
+		// Opencvの利用のため
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+		this.transmisstionImageSink = transmisstionImageSink;
+		this.outImgBytes = outImgBytes;
+		this.markerImage = markerImage;
+		prepareEncode();
+	}
+
+	/**
+	 * 送信するデータからカラーコードのサイズを決め、ブロックに配置するデータを作成する
+	 */
+	private void prepareEncode() {
+		// エンコードを行う情報リスト
+		transmissionSymbols = new SymbolBuffer();
+		if (Constants.RS_PARITY_BYTES > 0) {
+			reedSolomon = new ReedSolomon(Constants.RS_PARITY_BYTES);
+		}
+		// カラーコードのサイズ設定
+		if ((division = colorEncodeSize(outImgBytes)) != 0) {
+			// データ長とCRC、誤り訂正用のパリティを付加
+			encodedBytes = PanelPayload.encode(outImgBytes, division, reedSolomon);
+			System.out.println("データ長とCRC、パリティを含めたブロックの数は" + (encodedBytes.length * Constants.BLOCK_OF_BYTE) + "個なので"
+					+ division + "×" + division + "のカラーコードのサイズに設定します");
+		} else {
+			System.out.println("サイズ設定でのエラーが発生したため、サイズの設定をキャンセルしました");
+		}
+	}
+
 	/**
 	 * カラー・コード生成処理をループ
 	 */
 	private void createImageLoop() {
 		colorEncode(markerImage, 42, 42, markerImage.height() - 43, markerImage.width() - 43, division);
-		BufferedImage bufferedImageTemp = imageDrawing.matToBufferedImage(markerImage);
-		transmisstionImagePanel.setimage(bufferedImageTemp);// 変換した画像をPanelに追加
-		transmisstionImageFrame.repaint();
+		if (transmisstionImageSink != null) {
+			transmisstionImageSink.show(markerImage);
+		}
 	}
 
 	/**
@@ -153,7 +181,9 @@ public class CreateTransmisstionImage2 extends Thread {
 	 * @see CreateTransmisstionImage2#stopRunning()
 	 */
 	public void startRunning() {
-		transmisstionImageFrame.setVisible(true);
+		if (transmisstionImageSink != null) {
+			transmisstionImageSink.open();
+		}
 		new Thread(this).start();
 	}
 
@@ -164,10 +194,12 @@ public class CreateTransmisstionImage2 extends Thread {
 	 * @see CreateTransmisstionImage2#startRunning()
 	 */
 	public void stopRunning() {
-		transmissionList.clear();
+		transmissionSymbols.clear();
 		// 明示的にByte[]outImgBytesを0に初期化
 		// Arrays.fill(outImgBytes, (byte) 0);
-		transmisstionImageFrame.setVisible(false);
+		if (transmisstionImageSink != null) {
+			transmisstionImageSink.close();
+		}
 	}
 
 	/**
@@ -209,12 +241,21 @@ public class CreateTransmisstionImage2 extends Thread {
 	}
 
 	/**
-	 * 送信内容をリストで返す
+	 * 送信内容を返す
+	 *
+	 * @return 送信したブロックの記号
+	 */
+	public SymbolBuffer getTransmissionSymbols() {
+		return transmissionSymbols;
+	}
+
+	/**
+	 * 送信している画像データ(パリティを含まない)を返す
 	 *
-	 * @return 受信内容List
+	 * @return 画像のバイナリデータ
 	 */
-	public List<String> getTransmissionList() {
-		return transmissionList;
+	public byte[] getTransmissionBytes() {
+		return outImgBytes;
 	}
 
 	public int getDivision() {
@@ -222,20 +263,17 @@ public class CreateTransmisstionImage2 extends Thread {
 	}
 
 	/**
-	 * 画像データにおけるカラーコードのサイズの調整を行っている
+	 * 画像データにおけるカラーコードのサイズの調整を行っている<br>
+	 * データ長、CRC、パリティを含めて全てのbyteが収まる最小の分割値を選ぶ。
 	 *
 	 * @param outBytes
 	 */
 	private int colorEncodeSize(byte[] outBytes) {
 		int division = 0;
-		int blocQuantity;
-		int bytesLength;
 
 		codeSize: {
 			for (int i = Constants.BLOCL＿UNDER_LMIT; i <= Constants.BLOCL＿TOP_LMIT; i++) {
-				blocQuantity = (i * i);
-				bytesLength = outBytes.length * Constants.BLOCK_OF_BYTE;
-				if (bytesLength < blocQuantity) {
+				if (outBytes.length <= PanelPayload.dataCapacity(i, reedSolomon)) {
 					division = i;
 					break codeSize;
 				} else if (i > Constants.BLOCL＿TOP_LMIT) {
@@ -256,9 +294,9 @@ public class CreateTransmisstionImage2 extends Thread {
 	 */
 	private int[] colorEncodePattern(int byteIndex) {
 		int colorEncodeOfBloc[] = new int[Constants.BLOCK_OF_BYTE];
-		int firstHalfFourBits = (Integer.parseInt(Integer.toHexString((outImgBytes[byteIndex] & 0xf0) >> 4),
+		int firstHalfFourBits = (Integer.parseInt(Integer.toHexString((encodedBytes[byteIndex] & 0xf0) >> 4),
 				Constants.HEXADECIMAL_NOTATION));
-		int secondHalfFourBits = (Integer.parseInt(Integer.toHexString((outImgBytes[byteIndex] & 0x0f)),
+		int secondHalfFourBits = (Integer.parseInt(Integer.toHexString((encodedBytes[byteIndex] & 0x0f)),
 				Constants.HEXADECIMAL_NOTATION));
 		int randmColorCordFirstHalfNumber = (int) (Math.random() * (firstHalfFourBits));
 		int randmColorCordSecondHalfNumber = (int) (Math.random() * (secondHalfFourBits));
@@ -299,7 +337,7 @@ public class CreateTransmisstionImage2 extends Thread {
 	 * @param endY
 	 * @param division
 	 */
-	private void colorEncode(Mat srcImage, double startX, double startY, double endX, double endY, int division) {
+	void colorEncode(Mat srcImage, double startX, double startY, double endX, double endY, int division) {
 		int count = 0;
 		int loopCount = 0;
 		int byteIndexCounter = 0;
@@ -322,80 +360,67 @@ public class CreateTransmisstionImage2 extends Thread {
 						count = 0;
 						byteIndexCounter++;
 					}
-					if (loopCount < outImgBytes.length * Constants.BLOCK_OF_BYTE && count == 0) {
+					if (loopCount < encodedBytes.length * Constants.BLOCK_OF_BYTE && count == 0) {
 						// ここで一つのバイト配列の値から４つのブロックを決定
 						colorEncodeOfBloc = colorEncodePattern(byteIndexCounter);
-					} else if (loopCount < outImgBytes.length * Constants.BLOCK_OF_BYTE && count != 0) {
+					} else if (loopCount < encodedBytes.length * Constants.BLOCK_OF_BYTE && count != 0) {
 					} else {
 						for (int k = 0; k < colorEncodeOfBloc.length; k++) {
 							colorEncodeOfBloc[k] = Constants.COLORENCODE_SPACE;
 						}
 					}
 					switch (colorEncodeOfBloc[count]) {
-					case 0:
-						transmissionList.add("no");// 白
+					case 0:// 白
 						paintColorBGR = new Scalar(255, 255, 255);// (B,G,R)
 						break;
-					case 1:
-						transmissionList.add("1");// 赤
+					case 1:// 赤
 						paintColorBGR = new Scalar(0, 0, 255);
 						break;
-					case 2:
-						transmissionList.add("2");// 緑
+					case 2:// 緑
 						paintColorBGR = new Scalar(0, 255, 0);
 						break;
-					case 3:
-						transmissionList.add("3");// 青
+					case 3:// 青
 						paintColorBGR = new Scalar(255, 0, 0);
 						break;
-					case 4:
-						transmissionList.add("4");// 黄色
+					case 4:// 黄色
 						paintColorBGR = new Scalar(0, 255, 255);
 						break;
-					case 5:
-						transmissionList.add("5");// シアン
+					case 5:// シアン
 						paintColorBGR = new Scalar(255, 255, 0);
 						break;
-					case 6:
-						transmissionList.add("6");// マゼンタ
+					case 6:// マゼンタ
 						paintColorBGR = new Scalar(255, 50, 255);
 						break;
-					case 7:
-						transmissionList.add("7");// オレンジ
+					case 7:// オレンジ
 						paintColorBGR = new Scalar(0, 127, 255);
 						break;
-					case 8:
-						transmissionList.add("8");// 紫
+					case 8:// 紫
 						paintColorBGR = new Scalar(255, 0, 190);
 						break;
-					case 13:
-						transmissionList.add("space");// 黒
+					case 13:// 黒
 						paintColorBGR = new Scalar(0, 0, 0);
 						break;
 					case 14:// 枠外エラー
 						System.out.println("colorEncodeエラー");
 						return;
 					/////////////////////////////////////////////// ここまで使用
-					case 9:
-						transmissionList.add("90");// 黄緑
+					case 9:// 黄緑
 						paintColorBGR = new Scalar(0, 255, 127);
 						break;
-					case 10:
-						transmissionList.add("150");// 青緑
+					case 10:// 青緑
 						paintColorBGR = new Scalar(127, 255, 0);
 						break;
-					case 11:
-						transmissionList.add("210");//
+					case 11://
 						paintColorBGR = new Scalar(255, 127, 0);
 						break;
-					case 12:
-						transmissionList.add("330");//
+					case 12://
 						paintColorBGR = new Scalar(127, 0, 255);
 						break;
 					}
+					transmissionSymbols.add((byte) colorEncodeOfBloc[count]);// 送信した記号(カラー・コード番号)を記憶
 					Imgproc.rectangle(srcImage, new Point(x1, y1), new Point(x2, y2), paintColorBGR,
 							Constants.THICKNESS);
-					// System.out.println(transmissionList.get(loopCount));
+					// System.out.println(transmissionSymbols.get(loopCount));
 					count++;
 					loopCount++;
 
@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+
+/**
+ * 受信処理1フレーム分の作業用Matをまとめて保持する<br>
+ * 各Matは最初に取得したフレームのサイズで確保され、以降のフレームでは同じ領域を使い回す。<br>
+ * フレームサイズが変わった場合のみ再確保を行う。<br>
+ * FrameBufferPoolから取得して利用すること。受信パイプラインでは各ステージ間をキューで受け渡され、
+ * 同時に一つのステージのみが保持する。<br>
+ * マーカごとの作業用MatはMarkerWorkspaceに分けて保持し、1フレーム内の複数のマーカを別々に処理できる。
+ *
+ * @see FrameBufferPool
+ * @see MarkerWorkspace
+ * @see VisibleLightReceiver2
+ * @author Ogi
+ * @version 1.0
+ */
+public class FrameBuffer {
+
+	private Mat webcamImage;// webカメラのイメージ
+	private Mat hsvImage;// HSV変換後のイメージ
+	private Mat valueImage;// HSVのV(明度)チャンネル
+	private Mat channelImage;// BGRの1チャンネル(V(明度)の算出用)
+	private Mat processedImage;// 二値化イメージ
+	private Mat hierarchyData;// 読み取った輪郭線の階層情報
+	private MatOfPoint2f approxCurve;// 輪郭の直線近似用
+	private List<MarkerWorkspace> markerWorkspaceList;// マーカごとの作業領域(必要な数だけ確保し使い回す)
+
+	private List<MatOfPoint> contoursList;// 読み取った輪郭線を格納
+	private List<MatOfPoint> dorawOutLineList;// 認識した矩形マーカの輪郭線を格納
+
+	private int frameRows;
+	private int frameCols;
+	private int markerCount;// デコードステージに渡すマーカの数
+
+	public FrameBuffer() {
+		webcamImage = new Mat();
+		hsvImage = new Mat();
+		valueImage = new Mat();
+		channelImage = new Mat();
+		processedImage = new Mat();
+		hierarchyData = new Mat();
+		approxCurve = new MatOfPoint2f();
+		markerWorkspaceList = new ArrayList<MarkerWorkspace>();
+		contoursList = new ArrayList<MatOfPoint>();
+		dorawOutLineList = new ArrayList<MatOfPoint>();
+	}
+
+	/**
+	 * 取得したフレームのサイズに合わせて作業用Matを確保する<br>
+	 * サイズが前回と同じであれば何もしない。
+	 *
+	 * @param frame
+	 *            取得したフレーム
+	 */
+	public void prepare(Mat frame) {
+		if (frame.rows() == frameRows && frame.cols() == frameCols) {
+			return;
+		}
+		frameRows = frame.rows();
+		frameCols = frame.cols();
+		hsvImage.create(frameRows, frameCols, frame.type());
+		valueImage.create(frameRows, frameCols, CvType.CV_8UC1);
+		channelImage.create(frameRows, frameCols, CvType.CV_8UC1);
+		processedImage.create(frameRows, frameCols, CvType.CV_8UC1);
+	}
+
+	/**
+	 * 前フレームのマーカを破棄する(作業領域は次のマーカで使い回す)
+	 */
+	public void clearMarkers() {
+		for (int i = 0; i < markerCount; i++) {
+			markerWorkspaceList.get(i).reset();
+		}
+		markerCount = 0;
+	}
+
+	/**
+	 * 次のマーカの作業領域を返す<br>
+	 * addMarker()を呼ぶまではマーカの数に含まれないため、マーカでなかった場合はそのまま次の候補に使い回せる。
+	 *
+	 * @return 未使用の作業領域
+	 */
+	public MarkerWorkspace nextMarkerWorkspace() {
+		if (markerCount == markerWorkspaceList.size()) {
+			markerWorkspaceList.add(new MarkerWorkspace());
+		}
+		return markerWorkspaceList.get(markerCount);
+	}
+
+	/**
+	 * nextMarkerWorkspace()で取得した作業領域をマーカとして確定する
+	 */
+	public void addMarker() {
+		markerCount++;
+	}
+
+	/**
+	 * @param index
+	 *            マーカの番号(0～getMarkerCount()-1)
+	 * @return マーカの作業領域
+	 */
+	public MarkerWorkspace getMarkerWorkspace(int index) {
+		return markerWorkspaceList.get(index);
+	}
+
+	public int getMarkerCount() {
+		return markerCount;
+	}
+
+	/**
+	 * 前フレームで検出した輪郭を解放しリストを空にする
+	 */
+	public void clearContours() {
+		for (MatOfPoint contour : contoursList) {
+			contour.release();
+		}
+		for (MatOfPoint contour : dorawOutLineList) {
+			contour.release();
+		}
+		contoursList.clear();
+		dorawOutLineList.clear();
+	}
+
+	/**
+	 * 保持している全てのMatを解放する
+	 */
+	public void release() {
+		clearContours();
+		webcamImage.release();
+		hsvImage.release();
+		valueImage.release();
+		channelImage.release();
+		processedImage.release();
+		hierarchyData.release();
+		approxCurve.release();
+		for (MarkerWorkspace markerWorkspace : markerWorkspaceList) {
+			markerWorkspace.release();
+		}
+		markerWorkspaceList.clear();
+		markerCount = 0;
+		frameRows = 0;
+		frameCols = 0;
+	}
+
+	public Mat getWebcamImage() {
+		return webcamImage;
+	}
+
+	public Mat getHsvImage() {
+		return hsvImage;
+	}
+
+	public Mat getValueImage() {
+		return valueImage;
+	}
+
+	public Mat getChannelImage() {
+		return channelImage;
+	}
+
+	public Mat getProcessedImage() {
+		return processedImage;
+	}
+
+	public Mat getHierarchyData() {
+		return hierarchyData;
+	}
+
+	public MatOfPoint2f getApproxCurve() {
+		return approxCurve;
+	}
+
+	public List<MatOfPoint> getContoursList() {
+		return contoursList;
+	}
+
+	public List<MatOfPoint> getDorawOutLineList() {
+		return dorawOutLineList;
+	}
+}
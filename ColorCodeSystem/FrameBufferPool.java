@@ -0,0 +1,70 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 受信機ごとに用意するFrameBufferのプール<br>
+ * acquire()で取得したFrameBufferは処理が終わったらrecycle()で返却すること。<br>
+ * プールの容量を超えて取得しようとした場合はnullを返す。<br>
+ * 受信終了時にはrelease()で全てのMatを解放する。
+ *
+ * @see FrameBuffer
+ * @see VisibleLightReceiver2
+ * @author Ogi
+ * @version 1.0
+ */
+public class FrameBufferPool {
+
+	private final int capacity;
+	private final List<FrameBuffer> allBuffers;
+	private final ArrayDeque<FrameBuffer> freeBuffers;
+
+	/**
+	 * @param capacity
+	 *            同時に利用するFrameBufferの最大数
+	 */
+	public FrameBufferPool(int capacity) {
+		this.capacity = capacity;
+		allBuffers = new ArrayList<FrameBuffer>(capacity);
+		freeBuffers = new ArrayDeque<FrameBuffer>(capacity);
+	}
+
+	/**
+	 * 空いているFrameBufferを取得する
+	 *
+	 * @return FrameBuffer 空きがなければnull
+	 */
+	public synchronized FrameBuffer acquire() {
+		FrameBuffer buffer = freeBuffers.pollFirst();
+		if (buffer == null && allBuffers.size() < capacity) {
+			buffer = new FrameBuffer();
+			allBuffers.add(buffer);
+		}
+		return buffer;
+	}
+
+	/**
+	 * 利用し終わったFrameBufferを返却する
+	 *
+	 * @param buffer
+	 *            返却するFrameBuffer
+	 */
+	public synchronized void recycle(FrameBuffer buffer) {
+		if (buffer != null) {
+			buffer.clearContours();
+			freeBuffers.addFirst(buffer);
+		}
+	}
+
+	/**
+	 * 保持している全てのFrameBufferのMatを解放する<br>
+	 * 解放後もacquire()は利用でき、次のフレームのサイズで再確保される。
+	 */
+	public synchronized void release() {
+		for (FrameBuffer buffer : allBuffers) {
+			buffer.release();
+		}
+		freeBuffers.clear();
+		freeBuffers.addAll(allBuffers);
+	}
+}
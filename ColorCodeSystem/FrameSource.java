@@ -0,0 +1,40 @@
+import org.opencv.core.Mat;
+
+/**
+ * 受信機に入力するフレームの取得元<br>
+ * webカメラの他、動画ファイル、画像ファイルのディレクトリ、メモリ上で生成したフレームを同じ方法で扱う。<br>
+ * カメラのない環境で受信処理を動かしたり、記録したフレームで処理速度を測定するために利用する。
+ *
+ * @see CameraFrameSource
+ * @see VideoFileFrameSource
+ * @see ImageDirectoryFrameSource
+ * @see SyntheticFrameSource
+ * @author Ogi
+ * @version 1.0
+ */
+public interface FrameSource {
+
+	/**
+	 * 次のフレームを取得する<br>
+	 * 取得できなかった場合はframe.release()でframeを空にしてからFalseを返すこと
+	 * (受信機はFrameBufferを使い回すため、以前のフレームが残っていると同じフレームを処理し続ける)。
+	 *
+	 * @param frame
+	 *            取得したフレームの出力先(BGR)
+	 * @return フレームを取得できればTrueを返す
+	 */
+	boolean read(Mat frame);
+
+	/**
+	 * フレームの取得元が利用可能かを返す<br>
+	 * 動画ファイルや画像ディレクトリの場合、最後まで読み終わるとFalseになる。
+	 *
+	 * @return 利用可能であればTrue
+	 */
+	boolean isOpened();
+
+	/**
+	 * フレームの取得元を解放する
+	 */
+	void release();
+}
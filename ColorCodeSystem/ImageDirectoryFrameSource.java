@@ -0,0 +1,98 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * ディレクトリ内のPNG/JPEG画像をファイル名順にフレームとして取得する<br>
+ * preloadを指定すると全ての画像を最初に読み込んでおき、画像のデコード時間を受信処理の測定に含めない。
+ *
+ * @see FrameSource
+ * @author Ogi
+ * @version 1.0
+ */
+public class ImageDirectoryFrameSource implements FrameSource {
+
+	private List<File> imageFiles;
+	private List<Mat> preloadedFrames;
+	private boolean loop;
+	private boolean opened;
+	private int frameIndex;
+
+	/**
+	 * @param directory
+	 *            画像ファイルのあるディレクトリ
+	 * @param loop
+	 *            最後まで読み終わったら先頭から繰り返す場合はTrue
+	 * @param preload
+	 *            全ての画像を最初に読み込む場合はTrue
+	 */
+	public ImageDirectoryFrameSource(File directory, boolean loop, boolean preload) {
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);// Opencvの利用のため
+		this.loop = loop;
+		imageFiles = new ArrayList<File>();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				String name = file.getName().toLowerCase();
+				if (file.isFile() && (name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg"))) {
+					imageFiles.add(file);
+				}
+			}
+		}
+		if (imageFiles.isEmpty()) {
+			System.out.println(directory + "に画像ファイルがありません");
+		}
+		if (preload) {
+			preloadedFrames = new ArrayList<Mat>(imageFiles.size());
+			for (File file : imageFiles) {
+				preloadedFrames.add(Imgcodecs.imread(file.getPath()));
+			}
+		}
+		opened = !imageFiles.isEmpty();
+		frameIndex = 0;
+	}
+
+	public boolean read(Mat frame) {
+		if (!opened) {
+			frame.release();
+			return false;
+		}
+		if (frameIndex >= imageFiles.size()) {
+			if (!loop) {
+				opened = false;// 最後まで読み終わった
+				frame.release();
+				return false;
+			}
+			frameIndex = 0;
+		}
+		if (preloadedFrames != null) {
+			preloadedFrames.get(frameIndex).copyTo(frame);
+		} else {
+			Mat image = Imgcodecs.imread(imageFiles.get(frameIndex).getPath());
+			image.copyTo(frame);
+			image.release();
+		}
+		frameIndex++;
+		return !frame.empty();
+	}
+
+	public boolean isOpened() {
+		return opened;
+	}
+
+	public void release() {
+		opened = false;
+		if (preloadedFrames != null) {
+			for (Mat preloadedFrame : preloadedFrames) {
+				preloadedFrame.release();
+			}
+			preloadedFrames.clear();
+		}
+	}
+}
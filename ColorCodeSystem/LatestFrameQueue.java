@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 受信パイプラインの各ステージ間でフレームを受け渡す容量制限付きキュー<br>
+ * キューが満杯の場合は最も古いフレームを捨てて新しいフレームを入れる(最新フレーム優先)。<br>
+ * 捨てられたフレームはoffer()の戻り値として返すので、呼び出し側でプールに返却すること。
+ *
+ * @param <T>
+ *            受け渡すフレームの型
+ * @see VisibleLightReceiver2
+ * @author Ogi
+ * @version 1.0
+ */
+public class LatestFrameQueue<T> {
+
+	private final ArrayBlockingQueue<T> queue;
+
+	/**
+	 * @param capacity
+	 *            キューに保持するフレームの最大数
+	 */
+	public LatestFrameQueue(int capacity) {
+		queue = new ArrayBlockingQueue<T>(capacity);
+	}
+
+	/**
+	 * フレームを追加する。満杯の場合は最も古いフレームを取り除いてから追加する。
+	 *
+	 * @param frame
+	 *            追加するフレーム
+	 * @return 取り除かれたフレーム。取り除かれなければnull
+	 */
+	public synchronized T offer(T frame) {
+		T droppedFrame = null;
+		while (!queue.offer(frame)) {
+			T oldest = queue.poll();
+			if (oldest != null) {
+				droppedFrame = oldest;
+			}
+		}
+		return droppedFrame;
+	}
+
+	/**
+	 * フレームを取り出す。フレームがなければ指定時間まで待つ。
+	 *
+	 * @param timeout
+	 *            待ち時間
+	 * @param unit
+	 *            待ち時間の単位
+	 * @return 取り出したフレーム。時間内に取り出せなければnull
+	 * @throws InterruptedException
+	 */
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+		return queue.poll(timeout, unit);
+	}
+
+	/**
+	 * キューに残っている全てのフレームを取り出す
+	 *
+	 * @return 残っていたフレームのList
+	 */
+	public List<T> drain() {
+		List<T> frames = new ArrayList<T>();
+		queue.drainTo(frames);
+		return frames;
+	}
+}
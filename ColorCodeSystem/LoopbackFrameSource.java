@@ -0,0 +1,186 @@
+import java.awt.image.BufferedImage;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+
+/**
+ * 送信機の送信画像を画面とカメラを通さずに受信機へ渡す(ループバック)<br>
+ * 送信機の表示先(PreviewSink)として送信画像を受け取り、受信機のフレームの取得元(FrameSource)として最新の送信画像を返し続ける。
+ * 画面に表示し続けている状態と同じく、送信画像が更新されるまでは同じ画像を何度でも返す。<br>
+ * 劣化を加えない場合は黒の背景の中央に送信画像を配置し、OpticalChannelSimulatorを指定した場合はその劣化を加える。<br>
+ * 画面とカメラの速度に制限されない、送受信処理のみの処理速度の上限を測定するために利用する。
+ *
+ * @see CreateTransmisstionImage2
+ * @see VisibleLightReceiver2
+ * @see OpticalChannelSimulator
+ * @author Ogi
+ * @version 1.0
+ */
+public class LoopbackFrameSource implements FrameSource, PreviewSink {
+
+	private PreviewSink display;// 送信画像の表示先(表示しない場合はnull)
+	private OpticalChannelSimulator channel;// 劣化を加える場合のシミュレータ(劣化を加えない場合はnull)
+	private Mat canvas;// 劣化を加えない場合のフレーム
+	private Mat latestPanel;// 送信機から受け取った最新の送信画像
+	private Mat readPanel;// 受信機に渡すために複製した送信画像
+	private boolean hasPanel;
+	private volatile boolean opened;
+	private long frameCount;
+	private long firstFrameNanos;
+
+	/**
+	 * @param frameWidth
+	 *            受信機に渡すフレームの幅
+	 * @param frameHeight
+	 *            受信機に渡すフレームの高さ
+	 * @param display
+	 *            送信画像の表示先(表示しない場合はnull)
+	 * @param channel
+	 *            劣化を加える場合のシミュレータ(劣化を加えない場合はnull)
+	 */
+	public LoopbackFrameSource(int frameWidth, int frameHeight, PreviewSink display, OpticalChannelSimulator channel) {
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);// Opencvの利用のため
+		this.display = display;
+		this.channel = channel;
+		canvas = new Mat(frameHeight, frameWidth, CvType.CV_8UC3, new Scalar(0, 0, 0));
+		latestPanel = new Mat();
+		readPanel = new Mat();
+		hasPanel = false;
+		opened = true;
+	}
+
+	public void open() {
+		if (display != null) {
+			display.open();
+		}
+	}
+
+	/**
+	 * 送信画像を受け取り、待機中の受信機に知らせる
+	 */
+	public void show(Mat image) {
+		synchronized (this) {
+			image.copyTo(latestPanel);
+			hasPanel = true;
+			notifyAll();
+		}
+		if (display != null) {
+			display.show(image);
+		}
+	}
+
+	public void show(BufferedImage image) {
+		if (display != null) {
+			display.show(image);
+		}
+	}
+
+	/**
+	 * 送信の終了。次に送信画像を受け取るまで受信機を待たせる
+	 */
+	public void close() {
+		synchronized (this) {
+			hasPanel = false;
+		}
+		if (display != null) {
+			display.close();
+		}
+	}
+
+	/**
+	 * 送信画像を受け取るまで待ち、最新の送信画像からフレームを作成する
+	 */
+	public boolean read(Mat frame) {
+		synchronized (this) {
+			while (opened && !hasPanel) {
+				try {
+					wait(Constants.PIPELINE_POLL_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+				if (!hasPanel) {
+					frame.release();// 受信機が中断を確認できるよう、取得失敗として一定時間で戻る
+					return false;
+				}
+			}
+			if (!opened) {
+				frame.release();
+				return false;
+			}
+			latestPanel.copyTo(readPanel);// 劣化を加える間に送信画像が更新されても影響しないよう複製
+		}
+		if (channel != null) {
+			channel.distort(readPanel, frame);
+		} else {
+			placePanel(readPanel, frame);
+		}
+		if (frameCount++ == 0) {
+			firstFrameNanos = System.nanoTime();
+		}
+		return true;
+	}
+
+	public boolean isOpened() {
+		return opened;
+	}
+
+	public void release() {
+		synchronized (this) {
+			opened = false;
+			notifyAll();
+		}
+		canvas.release();
+		latestPanel.release();
+		readPanel.release();
+	}
+
+	/**
+	 * 受信機に渡したフレーム数を返す
+	 *
+	 * @return フレーム数
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * 最初のフレームを渡してからの経過時間を返す
+	 *
+	 * @return 経過時間(ナノ秒、フレームを渡していない場合は0)
+	 */
+	public long getElapsedNanos() {
+		return frameCount == 0 ? 0 : System.nanoTime() - firstFrameNanos;
+	}
+
+	/**
+	 * 測定を初めからやり直す
+	 */
+	public void resetCount() {
+		frameCount = 0;
+	}
+
+	/**
+	 * 黒の背景の中央に送信画像を配置する
+	 *
+	 * @param panel
+	 *            送信画像
+	 * @param frame
+	 *            出力先のフレーム
+	 */
+	private void placePanel(Mat panel, Mat frame) {
+		if (panel.cols() > canvas.cols() || panel.rows() > canvas.rows()) {
+			panel.copyTo(frame);// 背景に収まらない場合はそのまま渡す
+			return;
+		}
+		int x = (canvas.cols() - panel.cols()) / 2;
+		int y = (canvas.rows() - panel.rows()) / 2;
+		Mat panelArea = canvas.submat(new Rect(x, y, panel.cols(), panel.rows()));
+		panel.copyTo(panelArea);
+		panelArea.release();
+		canvas.copyTo(frame);
+	}
+}
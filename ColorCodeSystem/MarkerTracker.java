@@ -0,0 +1,95 @@
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Rect;
+
+/**
+ * 前フレームで検出したマーカの位置を追跡する<br>
+ * マーカを検出した次のフレームからは、前回の四隅を囲む矩形を広げた範囲だけを輪郭検出の対象にする。<br>
+ * 連続して指定回数検出できなかった場合は追跡をやめ、画像全体から探し直す。
+ *
+ * @see VisibleLightReceiver2
+ * @author Ogi
+ * @version 1.0
+ */
+public class MarkerTracker {
+
+	private Rect lastMarkerRect;// 前回検出したマーカを囲む矩形
+	private int missCount;// 追跡範囲で連続して検出できなかった回数
+	private int missLimit;
+	private double marginRatio;
+
+	/**
+	 * @param missLimit
+	 *            画像全体から探し直すまでの連続検出失敗回数
+	 * @param marginRatio
+	 *            マーカの大きさに対する探索範囲の広げ幅の割合
+	 */
+	public MarkerTracker(int missLimit, double marginRatio) {
+		this.missLimit = missLimit;
+		this.marginRatio = marginRatio;
+		reset();
+	}
+
+	/**
+	 * 輪郭検出の対象範囲を返す
+	 *
+	 * @param frameCols
+	 *            フレームの幅
+	 * @param frameRows
+	 *            フレームの高さ
+	 * @return 対象範囲。画像全体を探す場合はnull
+	 */
+	public Rect getSearchRegion(int frameCols, int frameRows) {
+		if (lastMarkerRect == null || missCount >= missLimit) {
+			return null;
+		}
+		int margin = (int) (Math.max(lastMarkerRect.width, lastMarkerRect.height) * marginRatio);
+		int x1 = Math.max(0, lastMarkerRect.x - margin);
+		int y1 = Math.max(0, lastMarkerRect.y - margin);
+		int x2 = Math.min(frameCols, lastMarkerRect.x + lastMarkerRect.width + margin);
+		int y2 = Math.min(frameRows, lastMarkerRect.y + lastMarkerRect.height + margin);
+		if (x2 <= x1 || y2 <= y1) {
+			return null;
+		}
+		return new Rect(x1, y1, x2 - x1, y2 - y1);
+	}
+
+	/**
+	 * マーカを検出したことを記録する
+	 *
+	 * @param markerContour
+	 *            検出したマーカの輪郭(四隅)
+	 */
+	public void markerFound(MatOfPoint markerContour) {
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (int i = 0; i < markerContour.rows(); i++) {
+			double[] point = markerContour.get(i, 0);
+			minX = Math.min(minX, (int) point[0]);
+			minY = Math.min(minY, (int) point[1]);
+			maxX = Math.max(maxX, (int) point[0]);
+			maxY = Math.max(maxY, (int) point[1]);
+		}
+		lastMarkerRect = new Rect(minX, minY, maxX - minX + 1, maxY - minY + 1);
+		missCount = 0;
+	}
+
+	/**
+	 * マーカを検出できなかったことを記録する
+	 */
+	public void markerMissed() {
+		if (lastMarkerRect != null) {
+			missCount++;
+			if (missCount >= missLimit) {
+				lastMarkerRect = null;// 画像全体から探し直す
+			}
+		}
+	}
+
+	/**
+	 * 追跡状態を初期化する
+	 */
+	public void reset() {
+		lastMarkerRect = null;
+		missCount = 0;
+	}
+}
@@ -0,0 +1,164 @@
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * マーカ1つ分の作業用Matと読み取り結果をまとめて保持する<br>
+ * 1フレーム内の複数のマーカを並列にデコードする場合、マーカごとに別のMarkerWorkspaceを利用する。<br>
+ * FrameBufferが必要な数だけ保持し、以降のフレームでは同じ領域を使い回す。
+ *
+ * @see FrameBuffer
+ * @see VisibleLightReceiver2
+ * @author Ogi
+ * @version 1.0
+ */
+public class MarkerWorkspace {
+
+	private Mat markerImage;// 射影変換後のマーカ
+	private Mat cornerColorImage;// マーカ四隅のブロックの画素(向きの判断用)
+	private Mat markerHueImage;// マーカのH(色相)チャンネル(プレビュー用)
+	private Mat srcPointMat;// 変換元座標
+	private Mat dstPointMat;// 変換後座標
+	private byte[] markerPixels;// マーカ画像の画素値(デコード時に一括で読み出す)
+	private Mat cellMapX;// 各ブロックの中心の入力画像上のx座標
+	private Mat cellMapY;// 各ブロックの中心の入力画像上のy座標
+	private Mat cellImage;// 各ブロックの中心の画素(1ブロック1画素)
+	private byte[] cellPixels;// cellImageの画素値
+
+	private int transformKey;// 画像の傾きを分類したキー
+	private SymbolBuffer symbolBuffer;// このマーカから読み取ったカラー・コード
+	private ColorCalibration colorCalibration;// 四隅のブロックから求めたこのマーカの色補正
+	private boolean decoded;// カラー・コードマーカと確認しデコードしたか
+
+	public MarkerWorkspace() {
+		markerImage = new Mat(Constants.MARKER_IMAGE_SIZE, Constants.MARKER_IMAGE_SIZE, CvType.CV_8UC3);
+		cornerColorImage = new Mat(Constants.SIDE_OF_THE_RECTANGLE, 1, CvType.CV_8UC3);
+		markerHueImage = new Mat();
+		srcPointMat = new Mat(Constants.SIDE_OF_THE_RECTANGLE, 2, CvType.CV_32F);
+		dstPointMat = new Mat(Constants.SIDE_OF_THE_RECTANGLE, 2, CvType.CV_32F);
+		markerPixels = new byte[Constants.MARKER_IMAGE_SIZE * Constants.MARKER_IMAGE_SIZE * Constants.HSV_CH];
+		cellMapX = new Mat();
+		cellMapY = new Mat();
+		cellImage = new Mat();
+		symbolBuffer = new SymbolBuffer();
+		colorCalibration = new ColorCalibration();
+	}
+
+	/**
+	 * マーカの行列分割値に合わせてブロック取得用のMatを確保する<br>
+	 * 分割値が前回と同じであれば何もしない。
+	 *
+	 * @param division
+	 *            マーカの行列分割値
+	 */
+	public void prepareCells(int division) {
+		if (cellPixels != null && cellPixels.length == division * division * Constants.HSV_CH) {
+			return;
+		}
+		cellMapX.create(division, division, CvType.CV_32FC1);
+		cellMapY.create(division, division, CvType.CV_32FC1);
+		cellImage.create(division, division, CvType.CV_8UC3);
+		cellPixels = new byte[division * division * Constants.HSV_CH];
+	}
+
+	/**
+	 * cellImageの全画素を一度のMat.getで配列に読み出す
+	 *
+	 * @return cellImageの画素値(符号付きbyteのため0xffでマスクして利用する)
+	 */
+	public byte[] readCellPixels() {
+		cellImage.get(0, 0, cellPixels);
+		return cellPixels;
+	}
+
+	/**
+	 * マーカ画像の全画素を一度のMat.getで配列に読み出す<br>
+	 * 画素(y,x)のチャンネルcは(y * MARKER_IMAGE_SIZE + x) * HSV_CH + cの位置に格納される。
+	 *
+	 * @return マーカ画像の画素値(符号付きbyteのため0xffでマスクして利用する)
+	 */
+	public byte[] readMarkerPixels() {
+		markerImage.get(0, 0, markerPixels);
+		return markerPixels;
+	}
+
+	/**
+	 * 前フレームの読み取り結果を消去する
+	 */
+	public void reset() {
+		transformKey = 0;
+		symbolBuffer.clear();
+		colorCalibration.reset();
+		decoded = false;
+	}
+
+	/**
+	 * 保持している全てのMatを解放する
+	 */
+	public void release() {
+		markerImage.release();
+		cornerColorImage.release();
+		markerHueImage.release();
+		srcPointMat.release();
+		dstPointMat.release();
+		cellMapX.release();
+		cellMapY.release();
+		cellImage.release();
+		cellPixels = null;
+	}
+
+	public Mat getMarkerImage() {
+		return markerImage;
+	}
+
+	public Mat getCornerColorImage() {
+		return cornerColorImage;
+	}
+
+	public Mat getMarkerHueImage() {
+		return markerHueImage;
+	}
+
+	public Mat getSrcPointMat() {
+		return srcPointMat;
+	}
+
+	public Mat getDstPointMat() {
+		return dstPointMat;
+	}
+
+	public Mat getCellMapX() {
+		return cellMapX;
+	}
+
+	public Mat getCellMapY() {
+		return cellMapY;
+	}
+
+	public Mat getCellImage() {
+		return cellImage;
+	}
+
+	public int getTransformKey() {
+		return transformKey;
+	}
+
+	public void setTransformKey(int transformKey) {
+		this.transformKey = transformKey;
+	}
+
+	public SymbolBuffer getSymbolBuffer() {
+		return symbolBuffer;
+	}
+
+	public ColorCalibration getColorCalibration() {
+		return colorCalibration;
+	}
+
+	public boolean isDecoded() {
+		return decoded;
+	}
+
+	public void setDecoded(boolean decoded) {
+		this.decoded = decoded;
+	}
+}
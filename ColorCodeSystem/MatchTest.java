@@ -33,4 +33,33 @@ public class MatchTest {
 			System.out.println(transmissionList.size() + "中 " + missCount + "がミス");
 		}
 	}
+
+	/**
+	 * 2つの記号バッファの内容を比較してミス数を表示する。(マーカver2用)<br>
+	 * 記号はbyte同士で比較し、ミスの表示時のみ文字列に変換する。
+	 *
+	 * @param receiveSymbols
+	 *            受信した記号
+	 * @param transmissionSymbols
+	 *            送信した記号
+	 */
+	public void startTest(SymbolBuffer receiveSymbols, SymbolBuffer transmissionSymbols) {
+		int missCount = 0;
+		if (receiveSymbols.isEmpty() || transmissionSymbols.isEmpty()) {
+			System.out.println("送受信が行われていません");
+		} else if (transmissionSymbols.size() != receiveSymbols.size()) {
+			System.out.println("送受信の設定が間違っています");
+			System.out.println("受信データ数" + receiveSymbols.size());
+			System.out.println("送信データ数" + transmissionSymbols.size());
+		} else {
+			for (int i = 0; i < transmissionSymbols.size(); i++) {
+				if (transmissionSymbols.get(i) != receiveSymbols.get(i)) {
+					missCount++;
+					System.out.println(i + "つめの送信dataが" + SymbolBuffer.symbolName(transmissionSymbols.get(i)) + "に対して"
+							+ "受信されたもの値が" + SymbolBuffer.symbolName(receiveSymbols.get(i)) + "だったため取得ミスです");
+				}
+			}
+			System.out.println(transmissionSymbols.size() + "中 " + missCount + "がミス");
+		}
+	}
 }
@@ -0,0 +1,286 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * 送信画像をカメラで撮影した場合の劣化を再現したフレームを生成する<br>
+ * 登録したパネル画像(CreateTransmisstionImage2、CreateTransmisstionImage2_colorOfThreeで生成した送信画像等)に、
+ * フレームごとに乱数で決めた射影変換(傾き、歪み)、ぼかし、ガンマ、白バランスのずれ、センサノイズ、JPEG圧縮をこの順に加える。<br>
+ * 画面もカメラもない環境で受信処理を最後まで動かし、スループットと誤り率を測定する場合に利用する。
+ *
+ * @see FrameSource
+ * @see SyntheticFrameSource
+ * @see ChannelSimulation
+ * @author Ogi
+ * @version 1.0
+ */
+public class OpticalChannelSimulator implements FrameSource {
+
+	private static final int BGR_CH = 3;
+
+	private List<Mat> panels;
+	private Random random;
+	private Scalar background;
+	private Size frameSize;
+	private int frameLimit;
+	private int frameCount;
+	private boolean opened;
+
+	private double cornerShift;// 四隅をずらす幅の上限(パネルの一辺に対する割合)
+	private double blurSigma;// ぼかしの標準偏差の上限
+	private double gammaRange;// ガンマ値の1からの変化幅
+	private double whiteBalanceRange;// 白バランスの倍率の1からの変化幅
+	private double noiseSigma;// センサノイズの標準偏差
+	private int jpegQuality;// JPEG圧縮の品質(0以下なら圧縮しない)
+
+	private Mat toneTable;// 白バランスとガンマをまとめた変換表(1×256、3チャンネル)
+	private Mat noiseImage;// センサノイズ(符号付き)
+	private MatOfByte jpegBuffer;
+
+	/**
+	 * @param frameWidth
+	 *            生成するフレームの幅
+	 * @param frameHeight
+	 *            生成するフレームの高さ
+	 * @param frameLimit
+	 *            生成するフレーム数。0以下なら無制限
+	 * @param seed
+	 *            劣化の乱数の種(同じ種なら同じフレームが生成される)
+	 */
+	public OpticalChannelSimulator(int frameWidth, int frameHeight, int frameLimit, long seed) {
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);// Opencvの利用のため
+		panels = new ArrayList<Mat>();
+		random = new Random(seed);
+		background = new Scalar(0, 0, 0);
+		frameSize = new Size(frameWidth, frameHeight);
+		this.frameLimit = frameLimit;
+		frameCount = 0;
+		opened = true;
+		cornerShift = Constants.SIMULATOR_CORNER_SHIFT;
+		blurSigma = Constants.SIMULATOR_BLUR_SIGMA;
+		gammaRange = Constants.SIMULATOR_GAMMA_RANGE;
+		whiteBalanceRange = Constants.SIMULATOR_WHITE_BALANCE_RANGE;
+		noiseSigma = Constants.SIMULATOR_NOISE_SIGMA;
+		jpegQuality = Constants.SIMULATOR_JPEG_QUALITY;
+		toneTable = new Mat(1, 256, CvType.CV_8UC3);
+		noiseImage = new Mat();
+		jpegBuffer = new MatOfByte();
+	}
+
+	/**
+	 * フレームに配置するパネル画像を追加する。パネルは追加した順に1フレームずつ切り替わる。<br>
+	 * パネルが1枚もない状態でread()を呼び出すと、取得元を終了(isOpened()がFalse)とするため、受信機に渡す前に追加すること。
+	 *
+	 * @param panel
+	 *            パネル画像(BGR)
+	 */
+	public void addPanel(Mat panel) {
+		panels.add(panel.clone());
+	}
+
+	/**
+	 * 背景色を設定する
+	 *
+	 * @param background
+	 *            背景色(B,G,R)
+	 */
+	public void setBackground(Scalar background) {
+		this.background = background;
+	}
+
+	/**
+	 * 四隅をずらす幅の上限を設定する(0で正面から撮影した状態)
+	 *
+	 * @param cornerShift
+	 *            パネルの一辺に対する割合
+	 */
+	public void setCornerShift(double cornerShift) {
+		this.cornerShift = cornerShift;
+	}
+
+	/**
+	 * ぼかしの標準偏差の上限を設定する(0でぼかさない)
+	 *
+	 * @param blurSigma
+	 *            標準偏差(ピクセル)
+	 */
+	public void setBlurSigma(double blurSigma) {
+		this.blurSigma = blurSigma;
+	}
+
+	/**
+	 * ガンマ値の変化幅を設定する(0でガンマ補正を行わない)
+	 *
+	 * @param gammaRange
+	 *            ガンマ値の1からの変化幅
+	 */
+	public void setGammaRange(double gammaRange) {
+		this.gammaRange = gammaRange;
+	}
+
+	/**
+	 * 白バランスのずれの幅を設定する(0で白バランスをずらさない)
+	 *
+	 * @param whiteBalanceRange
+	 *            B,G,Rそれぞれに掛ける倍率の1からの変化幅
+	 */
+	public void setWhiteBalanceRange(double whiteBalanceRange) {
+		this.whiteBalanceRange = whiteBalanceRange;
+	}
+
+	/**
+	 * センサノイズの標準偏差を設定する(0でノイズを加えない)
+	 *
+	 * @param noiseSigma
+	 *            標準偏差(画素値)
+	 */
+	public void setNoiseSigma(double noiseSigma) {
+		this.noiseSigma = noiseSigma;
+	}
+
+	/**
+	 * JPEG圧縮の品質を設定する
+	 *
+	 * @param jpegQuality
+	 *            品質(0～100、0以下なら圧縮しない)
+	 */
+	public void setJpegQuality(int jpegQuality) {
+		this.jpegQuality = jpegQuality;
+	}
+
+	/**
+	 * これまでに生成したフレーム数を返す
+	 *
+	 * @return 生成したフレーム数
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	public boolean read(Mat frame) {
+		if (panels.isEmpty()) {
+			opened = false;// パネルがなければ生成できるフレームもない
+		}
+		if (!opened || frameLimit > 0 && frameCount >= frameLimit) {
+			opened = false;
+			frame.release();// 受信側に取得の終了を伝えるため空にする
+			return false;
+		}
+		distort(panels.get(frameCount % panels.size()), frame);
+		frameCount++;
+		return true;
+	}
+
+	/**
+	 * パネル画像に劣化を加えたフレームを作成する<br>
+	 * 登録したパネルを使わず、他のフレームの取得元(LoopbackFrameSource等)の画像に劣化のみを加える場合にも利用する。
+	 *
+	 * @param panel
+	 *            パネル画像(BGR)
+	 * @param frame
+	 *            劣化を加えたフレームの出力先
+	 * @see LoopbackFrameSource
+	 */
+	public void distort(Mat panel, Mat frame) {
+		warpPanel(panel, frame);
+		if (blurSigma > 0) {
+			Imgproc.GaussianBlur(frame, frame, new Size(0, 0), uniform(0.3, blurSigma));
+		}
+		if (gammaRange > 0 || whiteBalanceRange > 0) {
+			updateToneTable();
+			Core.LUT(frame, toneTable, frame);
+		}
+		if (noiseSigma > 0) {
+			noiseImage.create(frame.rows(), frame.cols(), CvType.CV_16SC3);
+			Core.randn(noiseImage, 0, noiseSigma);
+			Core.add(frame, noiseImage, frame, new Mat(), CvType.CV_8UC3);// 0～255に飽和させて加算
+		}
+		if (jpegQuality > 0) {
+			Imgcodecs.imencode(".jpg", frame, jpegBuffer, new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, jpegQuality));
+			Mat decoded = Imgcodecs.imdecode(jpegBuffer, Imgcodecs.IMREAD_COLOR);
+			decoded.copyTo(frame);
+			decoded.release();
+		}
+	}
+
+	public boolean isOpened() {
+		return opened;
+	}
+
+	public void release() {
+		opened = false;
+		for (Mat panel : panels) {
+			panel.release();
+		}
+		panels.clear();
+		toneTable.release();
+		noiseImage.release();
+		jpegBuffer.release();
+	}
+
+	/**
+	 * パネルの四隅をフレーム中央付近のずらした位置に対応させる射影変換でフレームに配置する
+	 *
+	 * @param panel
+	 *            パネル画像
+	 * @param frame
+	 *            出力先のフレーム
+	 */
+	private void warpPanel(Mat panel, Mat frame) {
+		double side = frameSize.height * Constants.SIMULATOR_PANEL_SCALE;
+		double left = (frameSize.width - side) / 2;
+		double top = (frameSize.height - side) / 2;
+		double shift = side * cornerShift;
+		MatOfPoint2f srcCorners = new MatOfPoint2f(new Point(0, 0), new Point(panel.cols(), 0),
+				new Point(panel.cols(), panel.rows()), new Point(0, panel.rows()));
+		MatOfPoint2f dstCorners = new MatOfPoint2f(
+				new Point(left + uniform(-shift, shift), top + uniform(-shift, shift)),
+				new Point(left + side + uniform(-shift, shift), top + uniform(-shift, shift)),
+				new Point(left + side + uniform(-shift, shift), top + side + uniform(-shift, shift)),
+				new Point(left + uniform(-shift, shift), top + side + uniform(-shift, shift)));
+		Mat homography = Imgproc.getPerspectiveTransform(srcCorners, dstCorners);
+		Imgproc.warpPerspective(panel, frame, homography, frameSize, Imgproc.INTER_LINEAR, Core.BORDER_CONSTANT,
+				background);
+		homography.release();
+		srcCorners.release();
+		dstCorners.release();
+	}
+
+	/**
+	 * フレームごとの白バランスの倍率とガンマ値から、B,G,Rそれぞれの変換表を作成する
+	 */
+	private void updateToneTable() {
+		double gamma = 1 + uniform(-gammaRange, gammaRange);
+		double[] gains = new double[BGR_CH];
+		for (int c = 0; c < gains.length; c++) {
+			gains[c] = 1 + uniform(-whiteBalanceRange, whiteBalanceRange);
+		}
+		byte[] table = new byte[256 * gains.length];
+		for (int i = 0; i < 256; i++) {
+			for (int c = 0; c < gains.length; c++) {
+				double value = Math.min(i * gains[c] / 255.0, 1.0);
+				table[i * gains.length + c] = (byte) Math.round(255 * Math.pow(value, 1 / gamma));
+			}
+		}
+		toneTable.put(0, 0, table);
+	}
+
+	/**
+	 * 一様乱数を返す
+	 */
+	private double uniform(double min, double max) {
+		return min + (max - min) * random.nextDouble();
+	}
+}
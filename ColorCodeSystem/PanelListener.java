@@ -0,0 +1,22 @@
+/**
+ * 受信機がパネルを1枚デコードするごとに結果を受け取る<br>
+ * 誤り訂正とCRCの確認に失敗したパネルも通知されるため、受信に成功したデータだけでは分からない
+ * 誤り訂正前のブロックの読み取り誤りを集計できる。<br>
+ * デコードステージのスレッドから呼び出されるため、時間のかかる処理は行わないこと。
+ *
+ * @see VisibleLightReceiver2#setPanelListener(PanelListener)
+ * @author Ogi
+ * @version 1.0
+ */
+public interface PanelListener {
+
+	/**
+	 * 1枚のパネルのデコードを終えた
+	 *
+	 * @param symbols
+	 *            読み取ったブロックの記号(誤り訂正前。次のフレームで再利用されるため、保持する場合は複製すること)
+	 * @param accepted
+	 *            誤り訂正とCRCの確認に成功した場合はtrue
+	 */
+	void panelDecoded(SymbolBuffer symbols, boolean accepted);
+}
@@ -0,0 +1,130 @@
+import java.util.Arrays;
+
+/**
+ * マーカver2の1パネルに配置するデータの形式<br>
+ * [データ長(2byte)][データ][0埋め][CRC-16(2byte)]の並びをパネルの容量いっぱいまで埋め、
+ * 誤り訂正を利用する場合はリード・ソロモン符号のパリティを付加する。<br>
+ * 受信機はマーカの行列分割値のみから容量と並びを求め、CRCの一致で送信リストと照合せずに受信の成否を判断できる。
+ *
+ * @see CreateTransmisstionImage2
+ * @see VisibleLightReceiver2
+ * @see Crc16
+ * @see ReedSolomon
+ * @author Ogi
+ * @version 1.0
+ */
+public class PanelPayload {
+
+	private static final int LENGTH_BYTES = 2;// データ長の格納に使うbyte数
+	private static final int CRC_BYTES = 2;// CRCの格納に使うbyte数
+	private static final int MAX_DATA_LENGTH = 0xffff;
+
+	private PanelPayload() {
+	}
+
+	/**
+	 * パネルに配置できるbyte数を求める(四隅のマーカのブロックを除き、1byteにつき4ブロック)
+	 *
+	 * @param division
+	 *            マーカの行列分割値
+	 * @return 配置できるbyte数
+	 */
+	public static int capacity(int division) {
+		return (division * division - Constants.SIDE_OF_THE_RECTANGLE) / Constants.BLOCK_OF_BYTE;
+	}
+
+	/**
+	 * パネルに載せられるデータのbyte数を求める
+	 *
+	 * @param division
+	 *            マーカの行列分割値
+	 * @param reedSolomon
+	 *            誤り訂正(利用しない場合はnull)
+	 * @return データのbyte数(データ長とCRCを載せられない場合は負の値)
+	 */
+	public static int dataCapacity(int division, ReedSolomon reedSolomon) {
+		return payloadLength(capacity(division), reedSolomon) - LENGTH_BYTES - CRC_BYTES;
+	}
+
+	/**
+	 * データ長とCRCを付加し、パネルの容量いっぱいまで埋めたbyte列を作成する
+	 *
+	 * @param data
+	 *            送信するデータ
+	 * @param division
+	 *            マーカの行列分割値
+	 * @param reedSolomon
+	 *            誤り訂正(利用しない場合はnull)
+	 * @return パネルに配置するbyte列(容量に収まらない場合はnull)
+	 */
+	public static byte[] encode(byte[] data, int division, ReedSolomon reedSolomon) {
+		int payloadLength = payloadLength(capacity(division), reedSolomon);
+		if (data.length > MAX_DATA_LENGTH || data.length + LENGTH_BYTES + CRC_BYTES > payloadLength) {
+			return null;
+		}
+		byte[] payload = new byte[payloadLength];
+		payload[0] = (byte) (data.length >> 8);
+		payload[1] = (byte) data.length;
+		System.arraycopy(data, 0, payload, LENGTH_BYTES, data.length);
+		int crc = Crc16.compute(payload, 0, payloadLength - CRC_BYTES);
+		payload[payloadLength - 2] = (byte) (crc >> 8);
+		payload[payloadLength - 1] = (byte) crc;
+		return reedSolomon != null ? reedSolomon.encode(payload) : payload;
+	}
+
+	/**
+	 * パネルから読み取ったbyte列の誤りを訂正し、CRCを確認してデータを取り出す
+	 *
+	 * @param encoded
+	 *            パネルから読み取ったbyte列(capacity(division)byte)
+	 * @param erasures
+	 *            読み取れなかったbyteの位置にtrueを入れた配列
+	 * @param reedSolomon
+	 *            誤り訂正(利用しない場合はnull)
+	 * @return 取り出したデータ(訂正できない、またはCRCが一致しない場合はnull)
+	 */
+	public static byte[] decode(byte[] encoded, boolean[] erasures, ReedSolomon reedSolomon) {
+		int payloadLength = payloadLength(encoded.length, reedSolomon);
+		if (payloadLength < LENGTH_BYTES + CRC_BYTES) {
+			return null;
+		}
+		byte[] payload;
+		if (reedSolomon != null) {
+			payload = reedSolomon.decode(Arrays.copyOf(encoded, reedSolomon.encodedLength(payloadLength)),
+					Arrays.copyOf(erasures, reedSolomon.encodedLength(payloadLength)), payloadLength);
+			if (payload == null) {
+				return null;
+			}
+		} else {
+			for (int i = 0; i < payloadLength; i++) {
+				if (erasures[i]) {
+					return null;
+				}
+			}
+			payload = encoded;
+		}
+		int crc = ((payload[payloadLength - 2] & 0xff) << 8) | (payload[payloadLength - 1] & 0xff);
+		if (crc != Crc16.compute(payload, 0, payloadLength - CRC_BYTES)) {
+			return null;
+		}
+		int dataLength = ((payload[0] & 0xff) << 8) | (payload[1] & 0xff);
+		if (dataLength > payloadLength - LENGTH_BYTES - CRC_BYTES) {
+			return null;
+		}
+		return Arrays.copyOfRange(payload, LENGTH_BYTES, LENGTH_BYTES + dataLength);
+	}
+
+	/**
+	 * パリティを付加してもcapacityに収まる最大のbyte数を求める
+	 */
+	private static int payloadLength(int capacity, ReedSolomon reedSolomon) {
+		if (reedSolomon == null) {
+			return capacity;
+		}
+		int payloadLength = capacity;
+		while (payloadLength > 0 && reedSolomon.encodedLength(payloadLength) > capacity) {
+			payloadLength--;
+		}
+		return payloadLength;
+	}
+}
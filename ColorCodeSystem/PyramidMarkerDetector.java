@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * 縮小画像を利用したマーカ候補の検出<br>
+ * V(明度)画像をpyrDownで1/2または1/4に縮小してから二値化、輪郭検出を行い、四角形の候補を探す。<br>
+ * 見つかった候補の周辺範囲を元の解像度の座標で返すので、受信機はその範囲だけを元の解像度で輪郭検出し、
+ * 正確な四隅を求めてから射影変換を行う。
+ *
+ * @see VisibleLightReceiver2
+ * @author Ogi
+ * @version 1.0
+ */
+public class PyramidMarkerDetector {
+
+	private int pyramidLevel;// 縮小回数(1:1/2, 2:1/4)
+	private Mat[] pyramidImage;// 各段の縮小画像
+	private Mat binaryImage;// 縮小画像の二値化イメージ
+	private Mat hierarchyData;// 読み取った輪郭線の階層情報
+	private MatOfPoint2f approxCurve;// 輪郭の直線近似用
+	private MatOfPoint approxContour;
+	private List<MatOfPoint> contoursList;
+	private List<Rect> candidateRegions;
+
+	/**
+	 * @param pyramidLevel
+	 *            縮小回数(1:1/2, 2:1/4)
+	 */
+	public PyramidMarkerDetector(int pyramidLevel) {
+		this.pyramidLevel = pyramidLevel;
+		pyramidImage = new Mat[pyramidLevel];
+		for (int i = 0; i < pyramidLevel; i++) {
+			pyramidImage[i] = new Mat();
+		}
+		binaryImage = new Mat();
+		hierarchyData = new Mat();
+		approxCurve = new MatOfPoint2f();
+		approxContour = new MatOfPoint();
+		contoursList = new ArrayList<MatOfPoint>();
+		candidateRegions = new ArrayList<Rect>();
+	}
+
+	/**
+	 * 縮小画像からマーカ候補を探し、元の解像度での探索範囲を返す
+	 *
+	 * @param valueImage
+	 *            元の解像度のV(明度)画像
+	 * @param thresh
+	 *            二値化のしきい値
+	 * @param areaThreshold
+	 *            元の解像度での輪郭大きさのしきい値
+	 * @return 候補ごとの探索範囲(元の解像度の座標)
+	 */
+	public List<Rect> findCandidateRegions(Mat valueImage, double thresh, int areaThreshold) {
+		candidateRegions.clear();
+		Mat smallImage = valueImage;
+		for (int i = 0; i < pyramidLevel; i++) {
+			Imgproc.pyrDown(smallImage, pyramidImage[i]);
+			smallImage = pyramidImage[i];
+		}
+		int scale = 1 << pyramidLevel;
+		Imgproc.threshold(smallImage, binaryImage, thresh, 255, Imgproc.THRESH_BINARY);
+		Imgproc.findContours(binaryImage, contoursList, hierarchyData, Imgproc.RETR_CCOMP,
+				Imgproc.CHAIN_APPROX_SIMPLE);// 縮小画像内の輪郭を検出
+		for (int i = 0; i < contoursList.size(); i++) {
+			MatOfPoint contour = contoursList.get(i);
+			if (hierarchyData.get(0, i)[3] == -1 && isQuadrangle(contour, areaThreshold / (scale * scale), scale)) {
+				Rect bounding = Imgproc.boundingRect(contour);
+				int margin = scale * Constants.PYRAMID_REGION_MARGIN;
+				int x1 = Math.max(0, bounding.x * scale - margin);
+				int y1 = Math.max(0, bounding.y * scale - margin);
+				int x2 = Math.min(valueImage.cols(), (bounding.x + bounding.width) * scale + margin);
+				int y2 = Math.min(valueImage.rows(), (bounding.y + bounding.height) * scale + margin);
+				if (x2 > x1 && y2 > y1) {
+					candidateRegions.add(new Rect(x1, y1, x2 - x1, y2 - y1));
+				}
+			}
+			contour.release();
+		}
+		contoursList.clear();
+		return candidateRegions;
+	}
+
+	/**
+	 * 縮小画像上の輪郭が四角形の候補であるかを判断する
+	 *
+	 * @param contour
+	 *            縮小画像上の輪郭
+	 * @param areaThreshold
+	 *            縮小画像上での輪郭大きさのしきい値
+	 * @param scale
+	 *            縮小率の逆数
+	 * @return 四角形の候補であればTrue
+	 */
+	private boolean isQuadrangle(MatOfPoint contour, int areaThreshold, int scale) {
+		contour.convertTo(approxCurve, CvType.CV_32FC2);
+		Imgproc.approxPolyDP(approxCurve, approxCurve, 10.0 / scale, true);// 縮小率に合わせて近似精度を変える
+		approxCurve.convertTo(approxContour, CvType.CV_32S);
+		if (approxContour.total() != Constants.SIDE_OF_THE_RECTANGLE) {
+			return false;
+		}
+		if (Imgproc.contourArea(approxContour) < areaThreshold) {
+			return false;
+		}
+		return Imgproc.isContourConvex(approxContour);
+	}
+
+	/**
+	 * 保持している全てのMatを解放する
+	 */
+	public void release() {
+		for (Mat image : pyramidImage) {
+			image.release();
+		}
+		binaryImage.release();
+		hierarchyData.release();
+		approxCurve.release();
+		approxContour.release();
+	}
+}
@@ -0,0 +1,392 @@
+import java.util.Arrays;
+
+/**
+ * GF(256)上のリード・ソロモン符号による誤り訂正<br>
+ * データを(255 - パリティ数)byteごとのブロックに分け、各ブロックの後ろにパリティを付加する。<br>
+ * 1ブロックにつき、位置の分からない誤りはパリティ数の半分まで、位置の分かっている消失(読み取れなかったbyte)は
+ * パリティ数まで訂正できる(誤り数 × 2 + 消失数 ≦ パリティ数)。<br>
+ * 原始多項式はx^8 + x^4 + x^3 + x^2 + 1(0x11d)、生成多項式の根はα^0～α^(パリティ数 - 1)。
+ *
+ * @see CreateTransmisstionImage2
+ * @see VisibleLightReceiver2
+ * @author Ogi
+ * @version 1.0
+ */
+public class ReedSolomon {
+
+	private static final int FIELD_SIZE = 255;// GF(256)の0以外の元の数(符号長の上限)
+	private static final int PRIMITIVE_POLYNOMIAL = 0x11d;
+	private static final int[] EXP = new int[FIELD_SIZE * 2];// α^iの値(掛け算で添字の剰余を省くため2周期分)
+	private static final int[] LOG = new int[FIELD_SIZE + 1];// 値からiを求める
+
+	static {
+		int x = 1;
+		for (int i = 0; i < FIELD_SIZE; i++) {
+			EXP[i] = x;
+			LOG[x] = i;
+			x <<= 1;
+			if (x > FIELD_SIZE) {
+				x ^= PRIMITIVE_POLYNOMIAL;
+			}
+		}
+		for (int i = FIELD_SIZE; i < EXP.length; i++) {
+			EXP[i] = EXP[i - FIELD_SIZE];
+		}
+	}
+
+	private int parityLength;// 1ブロックのパリティのbyte数
+	private int blockDataLength;// 1ブロックのデータのbyte数
+	private int[] generator;// 生成多項式(次数の高い順)
+	private int correctedCount;// 直前のdecodeで訂正したbyte数
+
+	/**
+	 * @param parityLength
+	 *            1ブロックに付加するパリティのbyte数(1～254)
+	 */
+	public ReedSolomon(int parityLength) {
+		if (parityLength < 1 || parityLength >= FIELD_SIZE) {
+			throw new IllegalArgumentException("パリティ数が範囲外です:" + parityLength);
+		}
+		this.parityLength = parityLength;
+		blockDataLength = FIELD_SIZE - parityLength;
+		generator = new int[] { 1 };
+		for (int i = 0; i < parityLength; i++) {
+			generator = polyMultiply(generator, new int[] { 1, EXP[i] });
+		}
+	}
+
+	/**
+	 * パリティ付加後のbyte数を求める
+	 *
+	 * @param dataLength
+	 *            データのbyte数
+	 * @return データとパリティを合わせたbyte数
+	 */
+	public int encodedLength(int dataLength) {
+		int blockCount = (dataLength + blockDataLength - 1) / blockDataLength;
+		return dataLength + blockCount * parityLength;
+	}
+
+	/**
+	 * データをブロックに分け、各ブロックの後ろにパリティを付加する
+	 *
+	 * @param data
+	 *            送信するデータ
+	 * @return ブロックごとにデータ、パリティの順に並べたbyte列
+	 */
+	public byte[] encode(byte[] data) {
+		byte[] encoded = new byte[encodedLength(data.length)];
+		int outIndex = 0;
+		for (int start = 0; start < data.length; start += blockDataLength) {
+			int length = Math.min(blockDataLength, data.length - start);
+			int[] remainder = new int[length + parityLength];
+			for (int i = 0; i < length; i++) {
+				remainder[i] = data[start + i] & 0xff;
+			}
+			// データ × x^パリティ数 を生成多項式で割った余りがパリティ
+			for (int i = 0; i < length; i++) {
+				int coef = remainder[i];
+				if (coef != 0) {
+					for (int j = 1; j < generator.length; j++) {
+						remainder[i + j] ^= multiply(generator[j], coef);
+					}
+				}
+			}
+			System.arraycopy(data, start, encoded, outIndex, length);
+			outIndex += length;
+			for (int i = 0; i < parityLength; i++) {
+				encoded[outIndex++] = (byte) remainder[length + i];
+			}
+		}
+		return encoded;
+	}
+
+	/**
+	 * パリティを用いて誤りと消失を訂正し、データを取り出す
+	 *
+	 * @param encoded
+	 *            受信したbyte列(encodeと同じ並び)
+	 * @param erasures
+	 *            読み取れなかったbyteの位置にtrueを入れた配列(encodedと同じ長さ)
+	 * @param dataLength
+	 *            元のデータのbyte数
+	 * @return 訂正したデータ。訂正できないブロックがあればnull
+	 */
+	public byte[] decode(byte[] encoded, boolean[] erasures, int dataLength) {
+		correctedCount = 0;
+		if (encoded.length != encodedLength(dataLength)) {
+			return null;
+		}
+		byte[] data = new byte[dataLength];
+		int inIndex = 0;
+		for (int start = 0; start < dataLength; start += blockDataLength) {
+			int length = Math.min(blockDataLength, dataLength - start);
+			int[] codeword = new int[length + parityLength];
+			int[] erasurePositions = new int[codeword.length];
+			int erasureCount = 0;
+			for (int i = 0; i < codeword.length; i++) {
+				if (erasures[inIndex + i]) {
+					erasurePositions[erasureCount++] = i;
+				} else {
+					codeword[i] = encoded[inIndex + i] & 0xff;
+				}
+			}
+			int corrected = correctBlock(codeword, Arrays.copyOf(erasurePositions, erasureCount));
+			if (corrected < 0) {
+				return null;
+			}
+			correctedCount += corrected;
+			for (int i = 0; i < length; i++) {
+				data[start + i] = (byte) codeword[i];
+			}
+			inIndex += codeword.length;
+		}
+		return data;
+	}
+
+	/**
+	 * 直前のdecodeで訂正したbyte数(誤りと消失の合計)を返す
+	 *
+	 * @return 訂正したbyte数
+	 */
+	public int getCorrectedCount() {
+		return correctedCount;
+	}
+
+	public int getParityLength() {
+		return parityLength;
+	}
+
+	/**
+	 * 1ブロックの誤りと消失を訂正する
+	 *
+	 * @param codeword
+	 *            1ブロックの符号語(次数の高い順、消失の位置は0)。訂正結果で上書きされる
+	 * @param erasurePositions
+	 *            消失の位置
+	 * @return 訂正した位置の数。訂正できなければ-1
+	 */
+	private int correctBlock(int[] codeword, int[] erasurePositions) {
+		if (erasurePositions.length > parityLength) {
+			return -1;
+		}
+		int[] syndromes = syndromes(codeword);
+		if (isZero(syndromes)) {
+			return 0;// 誤りなし(消失の位置も正しく0であった)
+		}
+		// 消失の影響を除いたシンドロームから誤りの位置を求める
+		int[] forneySyndromes = forneySyndromes(syndromes, erasurePositions, codeword.length);
+		int[] errorLocator = errorLocator(forneySyndromes, erasurePositions.length);
+		if (errorLocator == null) {
+			return -1;
+		}
+		int[] errorPositions = findErrors(errorLocator, codeword.length);
+		if (errorPositions == null) {
+			return -1;
+		}
+		int[] errataPositions = new int[erasurePositions.length + errorPositions.length];
+		System.arraycopy(erasurePositions, 0, errataPositions, 0, erasurePositions.length);
+		System.arraycopy(errorPositions, 0, errataPositions, erasurePositions.length, errorPositions.length);
+		if (!correctErrata(codeword, syndromes, errataPositions)) {
+			return -1;
+		}
+		if (!isZero(syndromes(codeword))) {
+			return -1;
+		}
+		return errataPositions.length;
+	}
+
+	/**
+	 * シンドロームを求める(先頭は計算の都合上の0)
+	 */
+	private int[] syndromes(int[] codeword) {
+		int[] syndromes = new int[parityLength + 1];
+		for (int i = 0; i < parityLength; i++) {
+			syndromes[i + 1] = polyEvaluate(codeword, EXP[i]);
+		}
+		return syndromes;
+	}
+
+	/**
+	 * 消失の位置の影響を除いたシンドロームを求める
+	 */
+	private int[] forneySyndromes(int[] syndromes, int[] erasurePositions, int length) {
+		int[] forneySyndromes = Arrays.copyOfRange(syndromes, 1, syndromes.length);
+		for (int position : erasurePositions) {
+			int x = EXP[length - 1 - position];
+			for (int j = 0; j < forneySyndromes.length - 1; j++) {
+				forneySyndromes[j] = multiply(forneySyndromes[j], x) ^ forneySyndromes[j + 1];
+			}
+		}
+		return forneySyndromes;
+	}
+
+	/**
+	 * Berlekamp-Massey法で誤り位置多項式を求める
+	 *
+	 * @return 誤り位置多項式(次数の高い順)。訂正能力を超える場合はnull
+	 */
+	private int[] errorLocator(int[] forneySyndromes, int erasureCount) {
+		int[] errorLocator = { 1 };
+		int[] oldLocator = { 1 };
+		// 消失の影響はForneyシンドロームで除いてあるため、残りの(パリティ数 - 消失数)個で誤りのみを求める
+		for (int k = 0; k < parityLength - erasureCount; k++) {
+			int delta = forneySyndromes[k];
+			for (int j = 1; j < errorLocator.length; j++) {
+				delta ^= multiply(errorLocator[errorLocator.length - 1 - j], forneySyndromes[k - j]);
+			}
+			oldLocator = Arrays.copyOf(oldLocator, oldLocator.length + 1);
+			if (delta != 0) {
+				if (oldLocator.length > errorLocator.length) {
+					int[] newLocator = polyScale(oldLocator, delta);
+					oldLocator = polyScale(errorLocator, inverse(delta));
+					errorLocator = newLocator;
+				}
+				errorLocator = polyAdd(errorLocator, polyScale(oldLocator, delta));
+			}
+		}
+		int shift = 0;
+		while (shift < errorLocator.length - 1 && errorLocator[shift] == 0) {
+			shift++;
+		}
+		errorLocator = Arrays.copyOfRange(errorLocator, shift, errorLocator.length);
+		int errorCount = errorLocator.length - 1;
+		if (errorCount * 2 + erasureCount > parityLength) {
+			return null;
+		}
+		return errorLocator;
+	}
+
+	/**
+	 * 誤り位置多項式の根を総当たりで探し、誤りの位置を求める
+	 *
+	 * @return 誤りの位置。根の数が次数と一致しない場合はnull
+	 */
+	private int[] findErrors(int[] errorLocator, int length) {
+		int errorCount = errorLocator.length - 1;
+		int[] reversed = new int[errorLocator.length];
+		for (int i = 0; i < errorLocator.length; i++) {
+			reversed[i] = errorLocator[errorLocator.length - 1 - i];
+		}
+		int[] positions = new int[errorCount];
+		int found = 0;
+		for (int i = 0; i < length; i++) {
+			if (polyEvaluate(reversed, EXP[i]) == 0) {
+				if (found == errorCount) {
+					return null;
+				}
+				positions[found++] = length - 1 - i;
+			}
+		}
+		return found == errorCount ? positions : null;
+	}
+
+	/**
+	 * Forneyの公式で各位置の誤りの大きさを求め、符号語を訂正する
+	 *
+	 * @return 訂正できればtrue
+	 */
+	private boolean correctErrata(int[] codeword, int[] syndromes, int[] errataPositions) {
+		int length = codeword.length;
+		int[] coefPositions = new int[errataPositions.length];
+		int[] errataLocator = { 1 };
+		for (int i = 0; i < errataPositions.length; i++) {
+			coefPositions[i] = length - 1 - errataPositions[i];
+			errataLocator = polyMultiply(errataLocator, new int[] { EXP[coefPositions[i]], 1 });
+		}
+		// 誤り評価多項式 = シンドローム × 誤り位置多項式 mod x^(誤り数 + 1)
+		int[] reversedSyndromes = new int[syndromes.length];
+		for (int i = 0; i < syndromes.length; i++) {
+			reversedSyndromes[i] = syndromes[syndromes.length - 1 - i];
+		}
+		int[] product = polyMultiply(reversedSyndromes, errataLocator);
+		int evaluatorLength = errataLocator.length;
+		int[] evaluator = Arrays.copyOfRange(product, product.length - evaluatorLength, product.length);
+		int[] x = new int[coefPositions.length];
+		for (int i = 0; i < coefPositions.length; i++) {
+			x[i] = EXP[coefPositions[i]];
+		}
+		for (int i = 0; i < x.length; i++) {
+			int xInverse = inverse(x[i]);
+			int locatorPrime = 1;
+			for (int j = 0; j < x.length; j++) {
+				if (j != i) {
+					locatorPrime = multiply(locatorPrime, 1 ^ multiply(xInverse, x[j]));
+				}
+			}
+			if (locatorPrime == 0) {
+				return false;
+			}
+			int y = multiply(x[i], polyEvaluate(evaluator, xInverse));
+			codeword[errataPositions[i]] ^= divide(y, locatorPrime);
+		}
+		return true;
+	}
+
+	private static boolean isZero(int[] values) {
+		for (int value : values) {
+			if (value != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int multiply(int a, int b) {
+		if (a == 0 || b == 0) {
+			return 0;
+		}
+		return EXP[LOG[a] + LOG[b]];
+	}
+
+	private static int divide(int a, int b) {
+		if (a == 0) {
+			return 0;
+		}
+		return EXP[LOG[a] + FIELD_SIZE - LOG[b]];
+	}
+
+	private static int inverse(int a) {
+		return EXP[FIELD_SIZE - LOG[a]];
+	}
+
+	/**
+	 * 多項式の値を求める(Horner法、係数は次数の高い順)
+	 */
+	private static int polyEvaluate(int[] poly, int x) {
+		int y = poly[0];
+		for (int i = 1; i < poly.length; i++) {
+			y = multiply(y, x) ^ poly[i];
+		}
+		return y;
+	}
+
+	private static int[] polyMultiply(int[] p, int[] q) {
+		int[] r = new int[p.length + q.length - 1];
+		for (int j = 0; j < q.length; j++) {
+			for (int i = 0; i < p.length; i++) {
+				r[i + j] ^= multiply(p[i], q[j]);
+			}
+		}
+		return r;
+	}
+
+	private static int[] polyAdd(int[] p, int[] q) {
+		int[] r = new int[Math.max(p.length, q.length)];
+		for (int i = 0; i < p.length; i++) {
+			r[i + r.length - p.length] = p[i];
+		}
+		for (int i = 0; i < q.length; i++) {
+			r[i + r.length - q.length] ^= q[i];
+		}
+		return r;
+	}
+
+	private static int[] polyScale(int[] p, int x) {
+		int[] r = new int[p.length];
+		for (int i = 0; i < p.length; i++) {
+			r[i] = multiply(p[i], x);
+		}
+		return r;
+	}
+}
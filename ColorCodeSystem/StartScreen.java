@@ -22,8 +22,10 @@ import javax.swing.JToggleButton;
  */
 public class StartScreen extends JFrame implements ActionListener {
 
-	public static final int START_FRAMESIZE_X= 420;// startのｘのframesize
+	public static final int START_FRAMESIZE_X= 560;// startのｘのframesize
 	public static final int START_FRAMESIZE_Y= 200;// startのｙのframesize
+	public static final int LOOPBACK_FRAME_WIDTH = 640;// ループバックで受信機に渡すフレームの幅
+	public static final int LOOPBACK_FRAME_HEIGHT = 480;// ループバックで受信機に渡すフレームの高さ
 
 	private JFrame mainFrame;
 
@@ -31,6 +33,8 @@ public class StartScreen extends JFrame implements ActionListener {
 	private JToggleButton button2;
 	private JToggleButton button5;
 	private JToggleButton button6;
+	private JToggleButton button7;
+	private JToggleButton button8;
 	private JButton button3;
 	private JButton button4;
 
@@ -42,6 +46,13 @@ public class StartScreen extends JFrame implements ActionListener {
 
 	private MatchTest matchTest = new MatchTest();
 
+	// ループバック(画面とカメラを通さない送受信)は開始の度に生成する
+	private LoopbackFrameSource loopbackFrameSource;
+	private CreateTransmisstionImage2 loopbackTransmitter;
+	private VisibleLightReceiver2 loopbackReceiver;
+	private volatile boolean loopbackRunning;
+	private final Object loopbackLock = new Object();// 受信の再開と終了が重ならないように
+
 	StartScreen() {
 
 		mainFrame = new JFrame("スタートメニュー");
@@ -49,7 +60,7 @@ public class StartScreen extends JFrame implements ActionListener {
 		mainFrame.setSize(START_FRAMESIZE_X, START_FRAMESIZE_Y);
 		mainFrame.setLocationRelativeTo(null);
 		JPanel buttonPane = new JPanel();
-		buttonPane.setLayout(new GridLayout(2, 3));
+		buttonPane.setLayout(new GridLayout(2, 4));
 		// buttonPane.setLayout(null);
 
 		button1 = new JToggleButton("マーカ生成ver1");
@@ -81,12 +92,22 @@ public class StartScreen extends JFrame implements ActionListener {
 		button4.setPreferredSize(new Dimension(100, 100));
 		// button3.setBounds(50, 50, 80, 30);
 		button4.addActionListener(this);
+
+		button7 = new JToggleButton("ループバックver2");
+		button7.setPreferredSize(new Dimension(100, 100));
+		button7.addActionListener(this);
+
+		button8 = new JToggleButton("<html>ループバックver2<br>(劣化あり)<html>");
+		button8.setPreferredSize(new Dimension(100, 100));
+		button8.addActionListener(this);
 		buttonPane.add(button1);
 		buttonPane.add(button2);
 		buttonPane.add(button3);
+		buttonPane.add(button7);
 		buttonPane.add(button5);
 		buttonPane.add(button6);
 		buttonPane.add(button4);
+		buttonPane.add(button8);
 
 		mainFrame.add(buttonPane, BorderLayout.CENTER);
 		mainFrame.setVisible(true);
@@ -129,8 +150,8 @@ public class StartScreen extends JFrame implements ActionListener {
 			}
 			if (button5.isSelected() == true && button6.isSelected() == true) {
 				System.out.print("送受信チェックver2 : \n");
-				matchTest.startTest(visibleLightReceiver2.getReceiveList(),
-						createTransmisstionImage2.getTransmissionList());
+				matchTest.startTest(visibleLightReceiver2.getReceiveSymbols(),
+						createTransmisstionImage2.getTransmissionSymbols());
 			}
 		}
 		if (event.getSource() == button4) {
@@ -164,7 +185,75 @@ public class StartScreen extends JFrame implements ActionListener {
 				System.out.println("マーカ受信ver2【OFF】");
 			}
 		}
-		
+		if (event.getSource() == button7 || event.getSource() == button8) {
+			JToggleButton button = (JToggleButton) event.getSource();
+			JToggleButton otherButton = button == button7 ? button8 : button7;
+			if (button.isSelected() == true) {
+				if (otherButton.isSelected() == true) {// 同時に動かせるループバックは1つのみ
+					otherButton.setSelected(false);
+					stopLoopback();
+				}
+				startLoopback(button == button8);
+				System.out.println("ループバックver2【ON】");
+			} else {
+				stopLoopback();
+				System.out.println("ループバックver2【OFF】");
+			}
+		}
+
+	}
+
+	/**
+	 * 送信画像を画面とカメラを通さずに受信機へ渡し、受信を繰り返して処理速度を表示する
+	 *
+	 * @param distorted
+	 *            OpticalChannelSimulatorで劣化を加える場合はTrue
+	 * @see LoopbackFrameSource
+	 */
+	private void startLoopback(boolean distorted) {
+		OpticalChannelSimulator channel = distorted
+				? new OpticalChannelSimulator(LOOPBACK_FRAME_WIDTH, LOOPBACK_FRAME_HEIGHT, 0, System.nanoTime()) : null;
+		loopbackFrameSource = new LoopbackFrameSource(LOOPBACK_FRAME_WIDTH, LOOPBACK_FRAME_HEIGHT,
+				new SwingPreviewSink("送信画像ver2(ループバック)", Constants.ROW_MARGIN, Constants.COL_MARGIN), channel);
+		loopbackTransmitter = new CreateTransmisstionImage2(loopbackFrameSource);
+		loopbackReceiver = new VisibleLightReceiver2(loopbackTransmitter, loopbackFrameSource, null, null);
+		loopbackReceiver.setDivision(loopbackTransmitter.getDivision());
+		loopbackRunning = true;
+		loopbackTransmitter.startRunning();
+		final LoopbackFrameSource frameSource = loopbackFrameSource;
+		final VisibleLightReceiver2 receiver = loopbackReceiver;
+		new Thread(() -> {
+			long receivedBytes = 0;
+			int receivedCount = 0;
+			while (true) {
+				synchronized (loopbackLock) {
+					if (!loopbackRunning) {
+						break;
+					}
+					receiver.startRunning();
+				}
+				receiver.waitForStop();
+				if (receiver.getReceiveBytes() != null && loopbackRunning) {
+					receivedBytes += receiver.getReceiveBytes().length;
+					receivedCount++;
+					double seconds = frameSource.getElapsedNanos() / 1e9;
+					System.out.println("ループバック:受信" + receivedCount + "回 " + frameSource.getFrameCount() + "フレーム "
+							+ (frameSource.getFrameCount() / seconds) + "フレーム/秒 " + (receivedBytes / seconds) + "B/秒");
+				}
+			}
+			frameSource.release();
+		}, "StartScreen-loopback").start();
+	}
+
+	/**
+	 * ループバックを終了する
+	 */
+	private void stopLoopback() {
+		synchronized (loopbackLock) {
+			loopbackRunning = false;
+			loopbackReceiver.stopRunning();
+		}
+		loopbackTransmitter.stopRunning();
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,80 @@
+import java.awt.image.BufferedImage;
+
+import javax.swing.JFrame;
+
+import org.opencv.core.Mat;
+
+/**
+ * JFrameとImageDrawingパネルによる画像の表示先<br>
+ * 画像を表示するたびにウィンドウサイズを画像の大きさに合わせる。
+ *
+ * @see PreviewSink
+ * @see ImageDrawing
+ * @author Ogi
+ * @version 1.0
+ */
+public class SwingPreviewSink implements PreviewSink {
+
+	private JFrame imageFrame;
+	private ImageDrawing imagePanel;
+	private int widthMargin;
+	private int heightMargin;
+
+	/**
+	 * 閉じるボタンでは何もしないウィンドウを生成する
+	 *
+	 * @param title
+	 *            ウィンドウのタイトル
+	 * @param widthMargin
+	 *            画像の幅に対するウィンドウの横の余白
+	 * @param heightMargin
+	 *            画像の高さに対するウィンドウの縦の余白
+	 */
+	public SwingPreviewSink(String title, int widthMargin, int heightMargin) {
+		this(title, widthMargin, heightMargin, JFrame.DO_NOTHING_ON_CLOSE);
+	}
+
+	/**
+	 * @param title
+	 *            ウィンドウのタイトル
+	 * @param widthMargin
+	 *            画像の幅に対するウィンドウの横の余白
+	 * @param heightMargin
+	 *            画像の高さに対するウィンドウの縦の余白
+	 * @param closeOperation
+	 *            閉じるボタンの動作(JFrame.setDefaultCloseOperationの値)
+	 */
+	public SwingPreviewSink(String title, int widthMargin, int heightMargin, int closeOperation) {
+		this.widthMargin = widthMargin;
+		this.heightMargin = heightMargin;
+		imageFrame = new JFrame(title);
+		imageFrame.setDefaultCloseOperation(closeOperation);
+		imagePanel = new ImageDrawing();
+		imageFrame.setContentPane(imagePanel);
+	}
+
+	public void open() {
+		imageFrame.setVisible(true);
+	}
+
+	public void show(Mat image) {
+		show(imagePanel.matToBufferedImage(image));// 描画のためmat型からbufferedImage型に変換
+	}
+
+	public void show(BufferedImage image) {
+		if (image == null) {
+			return;
+		}
+		int frameWidth = image.getWidth() + widthMargin;
+		int frameHeight = image.getHeight() + heightMargin;
+		if (imageFrame.getWidth() != frameWidth || imageFrame.getHeight() != frameHeight) {
+			imageFrame.setSize(frameWidth, frameHeight);// ウィンドウサイズを取得画像に合ったサイズに
+		}
+		imagePanel.setimage(image);// 変換した画像をPanelに追加
+		imageFrame.repaint();// パネルを再描画
+	}
+
+	public void close() {
+		imageFrame.setVisible(false);
+	}
+}
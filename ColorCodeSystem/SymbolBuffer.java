@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * カラー・コードの記号を1ブロック1byteで保持する可変長バッファ<br>
+ * 記号は送信機のカラー・コード番号(白:0 赤:1～紫:8 黒:COLORENCODE_SPACE)をそのまま格納する。<br>
+ * 配列はclear()しても解放せず使い回すため、同じ大きさのデータを繰り返し送受信する間は新たな確保を行わない。
+ *
+ * @see CreateTransmisstionImage2
+ * @see VisibleLightReceiver2
+ * @see MatchTest
+ * @author Ogi
+ * @version 1.0
+ */
+public class SymbolBuffer {
+
+	// どの色にも当てはまらなかったブロックの記号
+	public static final byte SYMBOL_ERROR = HsvSymbolTable.SYMBOL_ERROR;
+
+	private byte[] symbols;
+	private int size;
+
+	public SymbolBuffer() {
+		this(Constants.BLOCL＿TOP_LMIT * Constants.BLOCL＿TOP_LMIT);
+	}
+
+	/**
+	 * @param capacity
+	 *            最初に確保するブロック数
+	 */
+	public SymbolBuffer(int capacity) {
+		symbols = new byte[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * 記号を末尾に追加する
+	 *
+	 * @param symbol
+	 *            ブロックの記号
+	 */
+	public void add(byte symbol) {
+		if (size == symbols.length) {
+			symbols = Arrays.copyOf(symbols, symbols.length * 2);
+		}
+		symbols[size++] = symbol;
+	}
+
+	/**
+	 * 別のバッファの記号を全て末尾に追加する
+	 *
+	 * @param other
+	 *            追加する記号
+	 */
+	public void addAll(SymbolBuffer other) {
+		if (size + other.size > symbols.length) {
+			symbols = Arrays.copyOf(symbols, Math.max(symbols.length * 2, size + other.size));
+		}
+		System.arraycopy(other.symbols, 0, symbols, size, other.size);
+		size += other.size;
+	}
+
+	public byte get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("index:" + index + " size:" + size);
+		}
+		return symbols[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * 記号を全て消去する(配列は使い回す)
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * 先頭からlength個の記号を比較し、最初に一致しない位置を返す<br>
+	 * どちらかのバッファがlength個に満たない場合は、短い方の末尾の位置を一致しない位置とする。
+	 *
+	 * @param other
+	 *            比較するバッファ
+	 * @param length
+	 *            比較するブロック数
+	 * @return 最初に一致しない位置(全て一致すれば-1)
+	 */
+	public int mismatch(SymbolBuffer other, int length) {
+		int limit = Math.min(length, Math.min(size, other.size));
+		byte[] a = symbols;
+		byte[] b = other.symbols;
+		for (int i = 0; i < limit; i++) {
+			if (a[i] != b[i]) {
+				return i;
+			}
+		}
+		return limit < length ? limit : -1;
+	}
+
+	/**
+	 * 記号をこれまでの受信リストと同じ文字列に変換する(表示用)
+	 *
+	 * @param symbol
+	 *            ブロックの記号
+	 * @return 白は"no"、黒は"space"、どの色にも当てはまらない場合は"error"、それ以外はカラー・コード番号
+	 */
+	public static String symbolName(byte symbol) {
+		switch (symbol) {
+		case Constants.BLOC_COLLAR_OF_WHITE:
+			return "no";
+		case Constants.COLORENCODE_SPACE:
+			return "space";
+		case SYMBOL_ERROR:
+			return "error";
+		default:
+			return String.valueOf(symbol);
+		}
+	}
+
+	/**
+	 * 表示用に全ての記号を文字列に変換する
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(symbolName(symbols[i]));
+		}
+		return builder.append("]").toString();
+	}
+}
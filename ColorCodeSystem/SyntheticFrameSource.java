@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+
+/**
+ * メモリ上でフレームを生成する<br>
+ * 登録したパネル画像(CreateTransmisstionImage2で生成したマーカ等)を背景の中央に配置したフレームを順番に出力する。<br>
+ * カメラもファイルも使わずに受信処理を動かす場合に利用する。
+ *
+ * @see FrameSource
+ * @author Ogi
+ * @version 1.0
+ */
+public class SyntheticFrameSource implements FrameSource {
+
+	private List<Mat> panels;
+	private Mat canvas;
+	private Scalar background;
+	private int frameLimit;
+	private int frameCount;
+	private boolean opened;
+
+	/**
+	 * @param frameWidth
+	 *            生成するフレームの幅
+	 * @param frameHeight
+	 *            生成するフレームの高さ
+	 * @param frameLimit
+	 *            生成するフレーム数。0以下なら無制限
+	 */
+	public SyntheticFrameSource(int frameWidth, int frameHeight, int frameLimit) {
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);// Opencvの利用のため
+		panels = new ArrayList<Mat>();
+		background = new Scalar(0, 0, 0);
+		canvas = new Mat(frameHeight, frameWidth, CvType.CV_8UC3, background);
+		this.frameLimit = frameLimit;
+		frameCount = 0;
+		opened = true;
+	}
+
+	/**
+	 * フレームに配置するパネル画像を追加する。パネルは追加した順に1フレームずつ切り替わる。<br>
+	 * パネルが1枚もない状態でread()を呼び出すと、取得元を終了(isOpened()がFalse)とするため、受信機に渡す前に追加すること。
+	 *
+	 * @param panel
+	 *            パネル画像(BGR)。フレームより小さいこと
+	 */
+	public void addPanel(Mat panel) {
+		if (panel.cols() > canvas.cols() || panel.rows() > canvas.rows()) {
+			System.out.println("パネルがフレームより大きいため追加できません");
+			return;
+		}
+		panels.add(panel.clone());
+	}
+
+	/**
+	 * 背景色を設定する
+	 *
+	 * @param background
+	 *            背景色(B,G,R)
+	 */
+	public void setBackground(Scalar background) {
+		this.background = background;
+	}
+
+	public boolean read(Mat frame) {
+		if (panels.isEmpty()) {
+			opened = false;// パネルがなければ生成できるフレームもない
+		}
+		if (!opened || frameLimit > 0 && frameCount >= frameLimit) {
+			opened = false;
+			frame.release();
+			return false;
+		}
+		Mat panel = panels.get(frameCount % panels.size());
+		canvas.setTo(background);
+		int x = (canvas.cols() - panel.cols()) / 2;
+		int y = (canvas.rows() - panel.rows()) / 2;
+		Mat panelArea = canvas.submat(new Rect(x, y, panel.cols(), panel.rows()));
+		panel.copyTo(panelArea);
+		panelArea.release();
+		canvas.copyTo(frame);
+		frameCount++;
+		return true;
+	}
+
+	public boolean isOpened() {
+		return opened;
+	}
+
+	public void release() {
+		opened = false;
+		for (Mat panel : panels) {
+			panel.release();
+		}
+		panels.clear();
+		canvas.release();
+	}
+}
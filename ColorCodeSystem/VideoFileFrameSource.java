@@ -0,0 +1,62 @@
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * 記録した動画ファイルからフレームを取得する
+ *
+ * @see FrameSource
+ * @author Ogi
+ * @version 1.0
+ */
+public class VideoFileFrameSource implements FrameSource {
+
+	private VideoCapture videoFile;
+	private boolean loop;
+	private boolean opened;
+
+	/**
+	 * @param fileName
+	 *            動画ファイルのパス
+	 * @param loop
+	 *            最後まで読み終わったら先頭から繰り返す場合はTrue
+	 */
+	public VideoFileFrameSource(String fileName, boolean loop) {
+		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);// Opencvの利用のため
+		videoFile = new VideoCapture(fileName);
+		this.loop = loop;
+		opened = videoFile.isOpened();
+		if (!opened) {
+			System.out.println(fileName + "を開けません");
+		}
+	}
+
+	public boolean read(Mat frame) {
+		if (!opened) {
+			frame.release();
+			return false;
+		}
+		if (videoFile.read(frame)) {
+			return true;
+		}
+		if (loop) {// 先頭に戻って読み直す
+			videoFile.set(Videoio.CAP_PROP_POS_FRAMES, 0);
+			if (videoFile.read(frame)) {
+				return true;
+			}
+		}
+		opened = false;// 最後まで読み終わった
+		frame.release();
+		return false;
+	}
+
+	public boolean isOpened() {
+		return opened;
+	}
+
+	public void release() {
+		opened = false;
+		videoFile.release();
+	}
+}
@@ -16,7 +16,6 @@ import org.opencv.core.Rect;
 import org.opencv.core.RotatedRect;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.videoio.VideoCapture;
 
 /**
  * マーカver1用受信機<br>
@@ -41,14 +40,24 @@ public class VisibleLightReceiver extends Thread {
 	private JFrame hsvImageFrame;
 	private ImageDrawing processedImagePanel;
 	private ImageDrawing hsvImagePanel;
-	private VideoCapture captureCamera;
+	private FrameSource frameSource;// フレームの取得元(webカメラ、動画ファイル等)
 	private boolean runningKey = false;
 	private List<String> receiveList;
 	private int division = 3;
 
 	public VisibleLightReceiver() {
+		this(new CameraFrameSource(0));// 使用webカメラの宣言
+	}
+
+	/**
+	 * webカメラ以外からフレームを取得する場合に利用する
+	 *
+	 * @param frameSource
+	 *            フレームの取得元
+	 */
+	public VisibleLightReceiver(FrameSource frameSource) {
 		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);// Opencvの利用のため
-		captureCamera = new VideoCapture(0);// 使用webカメラの宣言
+		this.frameSource = frameSource;
 		processedImageFrame = new JFrame("processedImage");// 加工画像用ウィンドウフレーム
 		hsvImageFrame = new JFrame("hsvImageFrame");// HSV画像用ウィンドウフレーム
 		processedImageFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
@@ -481,11 +490,13 @@ public class VisibleLightReceiver extends Thread {
 		List<MatOfPoint> dorawOutLineList = new ArrayList<>();// 認識した矩形マーカの輪郭線を格納
 		List<Point> pointsList = new ArrayList<Point>();// 認識した各矩形マーカの座標を格納]
 		Mat webcamImage = new Mat();// webカメラのイメージ
-		captureCamera.read(webcamImage);// webカメラの映像を画像保存
+		frameSource.read(webcamImage);// webカメラの映像を画像保存
 		if (webcamImage.empty()) {// 画像が取得できているか判断
 			System.out.println(" --(!) No captured frame -- Break!");// キャプチャの失敗時
-			if (!captureCamera.isOpened()) {
-				JOptionPane.showMessageDialog(null, "カメラが認識されていません、再度確認してください", "Warn", JOptionPane.WARNING_MESSAGE);
+			if (!frameSource.isOpened()) {
+				if (frameSource instanceof CameraFrameSource) {
+					JOptionPane.showMessageDialog(null, "カメラが認識されていません、再度確認してください", "Warn", JOptionPane.WARNING_MESSAGE);
+				}
 				stopRunning();
 			}
 			return;
@@ -1,8 +1,9 @@
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 
-import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
 import org.opencv.core.Core;
@@ -14,8 +15,6 @@ import org.opencv.core.Point;//java.awt.Pointとorg.opencv.core.Pointには互
 import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.videoio.VideoCapture;
-import org.opencv.videoio.Videoio;
 
 /**
  * 岩男/マーカver2用受信機<br>
@@ -26,67 +25,145 @@ import org.opencv.videoio.Videoio;
  * <br>
  * マーカver1とは互換性を持たない。<br>
  * フィールド変数であるdivisionの値をVisibleLightReceiver2のdivisionと揃えること。<br>
+ * 受信の成否はパネルに埋め込まれたCRCで判断し、送信リストとは照合しない。<br>
+ * Constants.RS_PARITY_BYTESが1以上の場合、リード・ソロモン符号で誤りを訂正するため、
+ * 一部のブロックを読み誤ったフレームでも受信できる。<br>
+ * detectMarker、markerChecker、transformMarker、colorDecordeはベンチマーク(ColorCodeSystemBenchmark)から
+ * リフレクションを介さずに呼び出せるようパッケージプライベートとしている。<br>
  * *****************************************************************************
  *
  * @see CreateTransmisstionImage
  * @see CreateTransmisstionImage2
+ * @see ReedSolomon
  * @see VisibleLightReceiver
  * @author Ogi
  * @version 1.0
  */
 public class VisibleLightReceiver2 extends Thread {
 
-	private VideoCapture captureCamera;
-	private JFrame processedImageFrame;
-	private JFrame hsvImageFrame;
-
-	private ImageDrawing imageDrawing;
-	private ImageDrawing processedImagePanel;
-	private ImageDrawing hsvImagePanel;
+	private FrameSource frameSource;// フレームの取得元(webカメラ、動画ファイル等)
+	private PreviewSink processedImageSink;// 加工画像の表示先(nullの場合は表示しない)
+	private PreviewSink markerImageSink;// マーカのH(色相)画像の表示先(nullの場合は表示しない)
 
 	private int division;
-	private int TransformKey;
-	private boolean runningKey;
+	private HsvSymbolTable symbolTable;// HSV値からカラー・コードの記号を求める参照テーブル
+	private volatile boolean runningKey;
 	private boolean listCountCheck;
 
-	private List<String> receiveList;
-	private byte[] inImgBytes;
+	private SymbolBuffer receiveSymbols;// 受信したブロックの記号
+	private byte[] inImgBytes;// 誤り訂正とCRCの確認を終えた受信データ
+	private ReedSolomon reedSolomon;// 誤り訂正(利用しない場合はnull)
 
 	private CreateTransmisstionImage2 createTransmisstionImage2;
+	private FrameBufferPool bufferPool;// 受信処理で使い回す作業用Mat
+	private LatestFrameQueue<FrameBuffer> detectQueue;// キャプチャ→マーカ検出
+	private LatestFrameQueue<FrameBuffer> decodeQueue;// マーカ検出→デコード
+	private LatestFrameQueue<FrameBuffer> previewQueue;// マーカ検出,デコード→プレビュー
+	private Thread receiverThread;// キャプチャステージを担当する受信スレッド
+	private MarkerTracker markerTracker;// 前フレームのマーカ位置の追跡
+	private boolean trackingMode;// マーカ追跡を利用するか
+	private boolean fullFrameHsv;// 画像全体をHSV変換するか(falseの場合は切り出したマーカのみ変換)
+	private boolean warpFreeDecode;// マーカ画像を作成せずブロックの中心のみ取得してデコードするか
+	private volatile CalibrationReference calibrationReference;// 四隅のブロックによる色補正の基準の色(補正しない場合はnull)
+	private PyramidMarkerDetector pyramidDetector;// 縮小画像でのマーカ候補検出(利用しない場合はnull)
+	private ForkJoinPool decodePool;// 複数のマーカの並列デコード用(1フレーム1マーカの場合はnull)
+	private boolean debugOutput;// ブロックごとの読み取り値などの確認用出力を行うか
+	private PanelListener panelListener;// パネルごとのデコード結果の通知先(通知しない場合はnull)
 
 	public VisibleLightReceiver2(CreateTransmisstionImage2 createTransmisstionImage2) {
+		this(createTransmisstionImage2, new CameraFrameSource(0));// 使用webカメラの宣言
+	}
+
+	/**
+	 * webカメラ以外からフレームを取得する場合に利用する
+	 *
+	 * @param createTransmisstionImage2
+	 *            送信側(受信の成否の判断には利用しないため、別の環境で送信する場合はnull)
+	 * @param frameSource
+	 *            フレームの取得元
+	 */
+	public VisibleLightReceiver2(CreateTransmisstionImage2 createTransmisstionImage2, FrameSource frameSource) {
+		this(createTransmisstionImage2, frameSource, new SwingPreviewSink("processedImage", 40, 60),
+				new SwingPreviewSink("hsvImageFrame", 35, 55));// 加工画像用、HSV画像用ウィンドウフレーム
+	}
+
+	/**
+	 * 画像の表示先を指定する場合に利用する<br>
+	 * 表示先にnullを渡すとウィンドウを生成せず、表示用の画像変換や描画も行わない。
+	 *
+	 * @param createTransmisstionImage2
+	 *            送信側(受信の成否の判断には利用しないため、別の環境で送信する場合はnull)
+	 * @param frameSource
+	 *            フレームの取得元
+	 * @param processedImageSink
+	 *            加工画像の表示先(表示しない場合はnull)
+	 * @param markerImageSink
+	 *            マーカのH(色相)画像の表示先(表示しない場合はnull)
+	 */
+	public VisibleLightReceiver2(CreateTransmisstionImage2 createTransmisstionImage2, FrameSource frameSource,
+			PreviewSink processedImageSink, PreviewSink markerImageSink) {
 		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);// Opencvの利用のため
-		captureCamera = new VideoCapture(0);// 使用webカメラの宣言
+		this.frameSource = frameSource;
 		this.createTransmisstionImage2 = createTransmisstionImage2;
-		// 加工画像用ウィンドウフレーム
-		processedImageFrame = new JFrame("processedImage");
-		processedImageFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
-		processedImagePanel = new ImageDrawing();
-		processedImageFrame.setContentPane(processedImagePanel);
-		// HSV画像用ウィンドウフレーム
-		hsvImageFrame = new JFrame("hsvImageFrame");
-		hsvImageFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
-		hsvImagePanel = new ImageDrawing();
-		hsvImageFrame.setContentPane(hsvImagePanel);
-		imageDrawing = new ImageDrawing();
+		this.processedImageSink = processedImageSink;
+		this.markerImageSink = markerImageSink;
+		// 各ステージが1つずつ保持し、残りはステージ間のキューに入る
+		bufferPool = new FrameBufferPool(Constants.PIPELINE_STAGE_COUNT
+				+ Constants.PIPELINE_QUEUE_SIZE * (Constants.PIPELINE_STAGE_COUNT - 1));
+		detectQueue = new LatestFrameQueue<FrameBuffer>(Constants.PIPELINE_QUEUE_SIZE);
+		decodeQueue = new LatestFrameQueue<FrameBuffer>(Constants.PIPELINE_QUEUE_SIZE);
+		previewQueue = new LatestFrameQueue<FrameBuffer>(Constants.PIPELINE_QUEUE_SIZE);
+		markerTracker = new MarkerTracker(Constants.TRACKING_MISS_LIMIT, Constants.TRACKING_MARGIN_RATIO);
+		trackingMode = true;
+		fullFrameHsv = false;
+		warpFreeDecode = false;
+		calibrationReference = null;
+		symbolTable = new HsvSymbolTable(Constants.COLLAR_HUE_BOUNDARIES, Constants.COLLAR_HUE_SYMBOLS,
+				Constants.BLOC_COLLAR_OF_WHITE, Constants.COLORENCODE_SPACE);
+		setPyramidLevel(Constants.PYRAMID_LEVEL);
 		runningKey = false;
 		listCountCheck = false;
+		if (Constants.RS_PARITY_BYTES > 0) {
+			reedSolomon = new ReedSolomon(Constants.RS_PARITY_BYTES);
+		}
 
 		// 最終的なデコード結果
-		receiveList = new ArrayList<String>();
+		receiveSymbols = new SymbolBuffer();
 
 	}
 
 	/**
 	 * クラスの並列動作に利用<br>
+	 * 受信処理をキャプチャ、マーカ検出、デコード、プレビューの4ステージに分け、それぞれ別スレッドで動作させる。<br>
+	 * ステージ間は最新フレーム優先のLatestFrameQueueで受け渡すため、デコードが遅れてもキャプチャは止まらない。<br>
+	 * このスレッド自身はキャプチャステージを担当する。
 	 *
 	 * @see VisibleLightReceiver2#startRunning()
 	 * @see VisibleLightReceiver2#stopRunning()
 	 */
 	public void run() {
-		while (runningKey) {
-			receiverLoop();
+		List<Thread> stageThreads = new ArrayList<Thread>();
+		stageThreads.add(new Thread(this::detectLoop, "VisibleLightReceiver2-detect"));
+		stageThreads.add(new Thread(this::decodeLoop, "VisibleLightReceiver2-decode"));
+		if (isPreviewEnabled()) {
+			stageThreads.add(new Thread(this::previewLoop, "VisibleLightReceiver2-preview"));
 		}
+		for (Thread stageThread : stageThreads) {
+			stageThread.start();
+		}
+		captureLoop();
+		for (Thread stageThread : stageThreads) {
+			try {
+				stageThread.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+		// 各キューに残ったフレームを返却してからネイティブメモリを解放
+		recycleAll(detectQueue.drain());
+		recycleAll(decodeQueue.drain());
+		recycleAll(previewQueue.drain());
+		bufferPool.release();
 	}
 
 	/**
@@ -96,11 +173,21 @@ public class VisibleLightReceiver2 extends Thread {
 	 * @see VisibleLightReceiver2#stopRunning()
 	 */
 	public void startRunning() {
-		processedImageFrame.setVisible(true);
-		hsvImageFrame.setVisible(true);
+		if (processedImageSink != null) {
+			processedImageSink.open();
+		}
+		if (markerImageSink != null) {
+			markerImageSink.open();
+		}
+		waitForReceiverThread();// 前回の受信スレッドがFrameBufferを解放し終えるのを待つ
 		setRunningKey(true);
 		clearReceiveList();
-		new Thread(this).start();
+		// 前回の受信結果を今回の取得成功と誤認しないよう消去する
+		inImgBytes = null;
+		listCountCheck = false;
+		markerTracker.reset();
+		receiverThread = new Thread(this);
+		receiverThread.start();
 	}
 
 	/**
@@ -110,25 +197,62 @@ public class VisibleLightReceiver2 extends Thread {
 	 * @see VisibleLightReceiver2#startRunning()
 	 */
 	public void stopRunning() {
-		processedImageFrame.setVisible(false);
-		hsvImageFrame.setVisible(false);
+		if (processedImageSink != null) {
+			processedImageSink.close();
+		}
+		if (markerImageSink != null) {
+			markerImageSink.close();
+		}
 		setRunningKey(false);
 	}
 
 	/**
-	 * 受信内容をリストで返す
+	 * 受信が終わる(取得成功、フレームの取得元の終了、stopRunning)まで待つ
+	 *
+	 * @see VisibleLightReceiver2#startRunning()
+	 */
+	public void waitForStop() {
+		waitForReceiverThread();
+	}
+
+	/**
+	 * 受信スレッドの終了を待つ
+	 */
+	private void waitForReceiverThread() {
+		if (receiverThread == null) {
+			return;
+		}
+		try {
+			receiverThread.join();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		receiverThread = null;
+	}
+
+	/**
+	 * 受信内容を返す
 	 *
-	 * @return 受信内容List
+	 * @return 受信したブロックの記号
 	 */
-	public List<String> getReceiveList() {
-		return receiveList;
+	public SymbolBuffer getReceiveSymbols() {
+		return receiveSymbols;
+	}
+
+	/**
+	 * 誤り訂正後の受信データを返す
+	 *
+	 * @return 受信したデータ(startRunning()後、受信に成功するまではnull)
+	 */
+	public byte[] getReceiveBytes() {
+		return inImgBytes;
 	}
 
 	/**
 	 * 受信リストをクリア
 	 */
 	private void clearReceiveList() {
-		receiveList.clear();
+		receiveSymbols.clear();
 	}
 
 	/**
@@ -138,6 +262,106 @@ public class VisibleLightReceiver2 extends Thread {
 		this.division = division;
 	}
 
+	/**
+	 * マーカ追跡の利用を設定する<br>
+	 * 有効にするとマーカ検出後のフレームでは前回の位置の周辺のみ輪郭検出を行う。
+	 *
+	 * @param trackingMode
+	 *            マーカ追跡を利用する場合はTrue
+	 */
+	public void setTrackingMode(boolean trackingMode) {
+		this.trackingMode = trackingMode;
+	}
+
+	/**
+	 * 画像全体をHSV変換するかを設定する<br>
+	 * falseの場合、二値化に使うV(明度)はBGRの最大値から求め、HSV変換は射影変換後のマーカ画像のみに行う。
+	 *
+	 * @param fullFrameHsv
+	 *            画像全体をHSV変換する場合はtrue
+	 */
+	public void setFullFrameHsv(boolean fullFrameHsv) {
+		this.fullFrameHsv = fullFrameHsv;
+	}
+
+	/**
+	 * デコード方法を設定する<br>
+	 * trueの場合、マーカ画像への射影変換を行わず、各ブロックの中心を変換行列で入力画像上の座標に戻して直接取得する。
+	 *
+	 * @param warpFreeDecode
+	 *            ブロックの中心のみ取得してデコードする場合はtrue
+	 */
+	public void setWarpFreeDecode(boolean warpFreeDecode) {
+		this.warpFreeDecode = warpFreeDecode;
+	}
+
+	/**
+	 * 四隅のブロックの色による色補正を設定する<br>
+	 * 基準の色を渡すと、マーカごとに四隅の色と基準の色との差を求め、データブロックの色判断のしきい値をそのフレームの明るさや色味に合わせる。<br>
+	 * 基準の色はCalibrationReference.measureで送信画像の元画像から測定したものを渡すこと。<br>
+	 * ChannelSimulationでの補正あり、なしの受信失敗率の比較で効果を確認するまでは、初期値はnull(補正しない)とする。
+	 *
+	 * @param calibrationReference
+	 *            送信画像の元画像から測定した四隅のブロックの色(補正しない場合はnull)
+	 * @see CalibrationReference#measure(Mat, int)
+	 */
+	public void setCornerCalibration(CalibrationReference calibrationReference) {
+		this.calibrationReference = calibrationReference;
+	}
+
+	/**
+	 * 縮小画像でのマーカ検出を設定する<br>
+	 * 縮小画像で四角形の候補を探し、候補の周辺のみ元の解像度で四隅を求める。受信中は変更しないこと。
+	 *
+	 * @param pyramidLevel
+	 *            縮小回数(0:利用しない 1:1/2 2:1/4)
+	 */
+	public void setPyramidLevel(int pyramidLevel) {
+		if (pyramidDetector != null) {
+			pyramidDetector.release();
+		}
+		pyramidDetector = pyramidLevel > 0 ? new PyramidMarkerDetector(pyramidLevel) : null;
+	}
+
+	/**
+	 * 1フレーム内の複数のマーカのデコードを設定する<br>
+	 * 有効にするとrectangleCheckerを通過した全ての四角形をデコードステージに渡し、
+	 * マーカであるかの確認とデコードを四角形ごとにForkJoinPoolで並列に行う。<br>
+	 * 複数のマーカを同時に受信するためマーカ追跡は利用しない。受信中は変更しないこと。
+	 *
+	 * @param multiMarkerDecode
+	 *            複数のマーカをデコードする場合はtrue
+	 */
+	public void setMultiMarkerDecode(boolean multiMarkerDecode) {
+		if (decodePool != null) {
+			decodePool.shutdown();
+		}
+		decodePool = multiMarkerDecode ? new ForkJoinPool() : null;
+	}
+
+	/**
+	 * パネルごとのデコード結果の通知先を設定する<br>
+	 * 誤り訂正とCRCの確認に失敗したパネルも含め、マーカを検出してデコードした全てのパネルが通知される。受信中は変更しないこと。
+	 *
+	 * @param panelListener
+	 *            通知先(通知しない場合はnull)
+	 */
+	public void setPanelListener(PanelListener panelListener) {
+		this.panelListener = panelListener;
+	}
+
+	/**
+	 * 確認用出力を設定する<br>
+	 * 有効にするとマーカの四隅の色、読み取れなかったブロックの値、全ブロックの読み取り値をフレームごとに標準出力へ出力する。<br>
+	 * 出力はデコードより時間がかかるため、受信速度の計測やベンチマークでは無効のままにすること。初期値は無効。
+	 *
+	 * @param debugOutput
+	 *            確認用出力を行う場合はtrue
+	 */
+	public void setDebugOutput(boolean debugOutput) {
+		this.debugOutput = debugOutput;
+	}
+
 	/**
 	 * 受信ループの制御値セット
 	 */
@@ -168,64 +392,60 @@ public class VisibleLightReceiver2 extends Thread {
 	}
 
 	/**
-	 * フィールド変数の変換キーを設定する。
+	 * 輪郭の四隅を変換元座標としてworkspaceのsrcPointMatに設定する
 	 *
-	 * @param setKey
-	 *            変換キーの番号
+	 * @param detectionContour
+	 *            入力画像内の四角形の輪郭
+	 * @param workspace
+	 *            マーカの作業領域
 	 */
-	private void setTransformKey(int setKey) {
-		TransformKey = setKey;
+	private void setMarkerCorners(MatOfPoint detectionContour, MarkerWorkspace workspace) {
+		float srcPoint[] = new float[8];
+		for (int i = 0; i < 4; i++) {
+			srcPoint[i * 2] = (float) detectionContour.get(i, 0)[0];
+			srcPoint[i * 2 + 1] = (float) detectionContour.get(i, 0)[1];
+		}
+		workspace.getSrcPointMat().put(0, 0, srcPoint);
 	}
 
 	/**
-	 * 画像と輪郭を判断し、画像の傾きを分類したキーをフィールド変数TransformKeyに与える。<br>
-	 * 画像の歪みを修正後、輪郭の各辺を水平、垂直に修正し出力する。
+	 * 四角形がカラー・コードマーカであるかを判断し、画像の傾きを分類したキーをworkspaceに与える。<br>
+	 * マーカ画像は作成せず、四隅のブロックの中心を変換行列の逆変換で入力画像上の座標に戻して色を確認する。<br>
+	 * 輪郭の四隅はsetMarkerCornersでworkspaceのsrcPointMatに設定しておくこと。
+	 * 作業領域はworkspaceのみを利用するため、別々のworkspaceであれば並列に呼び出せる。
 	 *
-	 * @param detectionContour
-	 *            入力画像内のマーカを示す輪郭
 	 * @param srcImage
-	 *            入力画像
-	 * @param datImage
-	 *            出力画像
-	 * @param areaThreshold
-	 *            輪郭大きさのしきい値
+	 *            入力画像(hsvImage、画像全体のHSV変換を省略する場合はwebcamImage)
+	 * @param workspace
+	 *            マーカの作業領域
 	 * @param division
 	 *            マーカの行列分割値
 	 * @return カラー・コードマーカを検出できたらTrueを返す。
+	 * @see VisibleLightReceiver2#setMarkerCorners(MatOfPoint, MarkerWorkspace)
+	 * @see VisibleLightReceiver2#transformMarker(Mat, MarkerWorkspace)
 	 */
-	private Boolean markerChecker(MatOfPoint detectionContour, Mat srcImage, Mat datImage, int areaThreshold,
-			int division) {
-		if (rectangleChecker(detectionContour, areaThreshold) == false) {
-			return false;
-		}
+	Boolean markerChecker(Mat srcImage, MarkerWorkspace workspace, int division) {
+		int markerSize = Constants.MARKER_IMAGE_SIZE;
 		//////// ４色確認
 		//////// 射影変換
-		// 変換元座標設定
-		float srcPoint[] = new float[8];
-		for (int i = 0; i < 4; i++) {
-			srcPoint[i * 2] = (float) detectionContour.get(i, 0)[0];
-			srcPoint[i * 2 + 1] = (float) detectionContour.get(i, 0)[1];
-		}
-		Mat srcPointMat = new Mat(4, 2, CvType.CV_32F);
-		srcPointMat.put(0, 0, srcPoint);
+		// 変換元座標(輪郭の四隅)はsetMarkerCornersで設定済み
+		Mat srcPointMat = workspace.getSrcPointMat();
 		// 変換後座標設定
-		Mat dstPointMat = new Mat(4, 2, CvType.CV_32F);
+		Mat dstPointMat = workspace.getDstPointMat();
 		float[] dstPoint;
-		dstPoint = new float[] { datImage.cols(), datImage.rows(), datImage.cols(), 0, 0, 0, 0, datImage.rows() };
+		dstPoint = new float[] { markerSize, markerSize, markerSize, 0, 0, 0, 0, markerSize };
 		dstPointMat.put(0, 0, dstPoint);
-		// 変換行列作成
-		Mat r_mat = Imgproc.getPerspectiveTransform(srcPointMat, dstPointMat);
-		// 図形変換処理
-		Mat dstMat = new Mat(datImage.rows(), datImage.cols(), datImage.type());
-		Imgproc.warpPerspective(srcImage, dstMat, r_mat, dstMat.size(), Imgproc.INTER_LINEAR);
-		Mat cuttingImage = new Mat(dstMat, new Rect(0, 0, datImage.cols(), datImage.rows()));
-		cuttingImage.copyTo(datImage);
+		// マーカ画像上の座標から入力画像上の座標への変換行列作成
+		Mat inverseMat = Imgproc.getPerspectiveTransform(dstPointMat, srcPointMat);
+		double[] h = new double[9];
+		inverseMat.get(0, 0, h);
+		inverseMat.release();
 		//////// ４色確認Collar
-		char[] collarCheckbox = new char[4];
+		Mat cornerColorImage = workspace.getCornerColorImage();
 		int boxCount = 0;
-		double[] data = new double[3];// HSV各チャンネル格納用
-		double oneThirdWidth = (datImage.rows()) / (double) division;
-		double oneThirdHeight = (datImage.cols()) / (double) division;
+		byte[] data = new byte[Constants.HSV_CH];// HSV各チャンネル格納用(四隅のみのため一括読み出しは行わない)
+		double oneThirdWidth = markerSize / (double) division;
+		double oneThirdHeight = markerSize / (double) division;
 
 		for (int i = 0; i < division; i++) {
 			for (int j = 0; j < division; j++) {
@@ -233,107 +453,186 @@ public class VisibleLightReceiver2 extends Thread {
 						|| i == division - 1 && j == division - 1) {
 					int x = (int) ((j * oneThirdWidth + (j + 1) * oneThirdWidth) / 2);
 					int y = (int) ((i * oneThirdHeight + (i + 1) * oneThirdHeight) / 2);
-					data = cuttingImage.get(y, x);// HSV各チャンネルを格納(y,x)なので注意
-
-					if (data[0] * 2 <= 45 || data[0] * 2 >= 330) {// H（色相）を元に色を判断
-						collarCheckbox[boxCount++] = 'A';
-					} else if (data[0] * 2 > 45 && data[0] * 2 <= 135) {
-						collarCheckbox[boxCount++] = 'B';
-					} else if (data[0] * 2 > 135 && data[0] * 2 <= 225) {
-						collarCheckbox[boxCount++] = 'C';
-					} else {
-						// System.out.print( "青");
-						collarCheckbox[boxCount++] = 'D';
-					}
-
-					Imgproc.circle(cuttingImage, new Point(x, y), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化
-
+					// 入力画像上の座標に戻す
+					double w = h[6] * x + h[7] * y + h[8];
+					int srcX = (int) Math.round((h[0] * x + h[1] * y + h[2]) / w);
+					int srcY = (int) Math.round((h[3] * x + h[4] * y + h[5]) / w);
+					srcX = Math.min(Math.max(srcX, 0), srcImage.cols() - 1);
+					srcY = Math.min(Math.max(srcY, 0), srcImage.rows() - 1);
+					srcImage.get(srcY, srcX, data);// 各チャンネルを格納(y,x)なので注意
+					cornerColorImage.put(boxCount++, 0, data);
 				}
 			}
 			// System.out.println("");
 		}
+		if (!fullFrameHsv) {
+			Imgproc.cvtColor(cornerColorImage, cornerColorImage, Imgproc.COLOR_BGR2HSV);// 四隅の4画素のみHSV変換
+		}
+		char[] collarCheckbox = new char[4];
+		for (boxCount = 0; boxCount < collarCheckbox.length; boxCount++) {
+			cornerColorImage.get(boxCount, 0, data);
+			int hue = (data[0] & 0xff) * 2;
+			collarCheckbox[boxCount] = CalibrationReference.classifyHue(hue);// H（色相）を元に色を判断
+		}
 		String sumWord = new String(collarCheckbox);
 
 		switch (sumWord) {
 		case "ABCD":// 基準マーカ（マーカの角）はmarkerOutLinePoint[0]である
-			setTransformKey(1);
+			workspace.setTransformKey(1);
 			break;
 		case "CADB":// markerOutLinePoint[1]が左上になるように変換
-			setTransformKey(2);
+			workspace.setTransformKey(2);
 			break;
 		case "DCBA":// markerOutLinePoint[2]が左上になるように変換
-			setTransformKey(3);
+			workspace.setTransformKey(3);
 			break;
 		case "BDAC":// markerOutLinePoint[3]が左上になるように変換
-			setTransformKey(4);
+			workspace.setTransformKey(4);
 			break;
 		default:// 枠外エラー
 			return false;
 		}
-		System.out.println(sumWord);
-		cuttingImage.copyTo(datImage);
+		CalibrationReference reference = calibrationReference;
+		if (reference != null) {
+			// 四隅の色と基準の色との差から、このフレームのデータブロックの色判断に使う補正を求める
+			workspace.getColorCalibration().update(cornerColorImage, collarCheckbox, reference);
+		}
+		if (debugOutput) {
+			System.out.println(sumWord);
+		}
 		return true;
 	}
 
 	/**
-	 * 画像の傾きを分類したキーを元に射影変換を行い傾きを修正する 変換後の画像を出力サイズにカットし出力。
+	 * 画像の傾きを分類したキーを元に射影変換を行い、歪みと傾きを1回の変換でまとめて修正する。<br>
+	 * workspaceのsrcPointMatに設定した輪郭の四隅を、傾きに合わせて並べ替えた出力画像の四隅に対応させる。<br>
+	 * 出力画像はworkspaceのmarkerImage(HSV)を利用する。
 	 *
 	 * @param srcImage
-	 *            入力イメージ
-	 * @param datImage
-	 *            出力先イメージ
-	 * @param TransformKey
-	 *            変換キー
-	 */
-	private void transformMarker(Mat srcImage, Mat datImage, int TransformKey) {
-		// 変換元座標設定
-		float srcPoint[] = { 0, 0, srcImage.cols(), 0, srcImage.cols(), srcImage.rows(), 0, srcImage.rows() };
-
-		Mat srcPointMat = new Mat(4, 2, CvType.CV_32F);
-		srcPointMat.put(0, 0, srcPoint);
+	 *            入力画像(hsvImage、画像全体のHSV変換を省略する場合はwebcamImage)
+	 * @param workspace
+	 *            markerCheckerで変換キーを設定済みのマーカの作業領域
+	 * @see VisibleLightReceiver2#markerChecker(Mat, MarkerWorkspace, int)
+	 */
+	void transformMarker(Mat srcImage, MarkerWorkspace workspace) {
+		Mat datImage = workspace.getMarkerImage();
+		if (!setOrientedCorners(workspace)) {
+			return;
+		}
+
+		// 変換行列作成(変換元座標は輪郭の四隅)
+		Mat r_mat = Imgproc.getPerspectiveTransform(workspace.getSrcPointMat(), workspace.getDstPointMat());
+		// 図形変換処理(出力サイズで変換するため切り出しは不要)
+		Imgproc.warpPerspective(srcImage, datImage, r_mat, datImage.size(), Imgproc.INTER_LINEAR);
+		r_mat.release();
+		if (!fullFrameHsv) {
+			Imgproc.cvtColor(datImage, datImage, Imgproc.COLOR_BGR2HSV);// 切り出したマーカのみHSV変換
+		}
+		if (markerImageSink == null) {
+			return;
+		}
+		// 四隅のブロックの色情報取得点可視化
+		double oneThirdWidth = datImage.cols() / (double) division;
+		double oneThirdHeight = datImage.rows() / (double) division;
+		for (int i = 0; i < division; i += division - 1) {
+			for (int j = 0; j < division; j += division - 1) {
+				int x = (int) ((j * oneThirdWidth + (j + 1) * oneThirdWidth) / 2);
+				int y = (int) ((i * oneThirdHeight + (i + 1) * oneThirdHeight) / 2);
+				Imgproc.circle(datImage, new Point(x, y), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化
+			}
+		}
+	}
+
+	/**
+	 * 画像の傾きを分類したキーを元に、輪郭の四隅に対応する出力画像の四隅をworkspaceのdstPointMatに設定する
+	 *
+	 * @param workspace
+	 *            markerCheckerで変換キーを設定済みのマーカの作業領域
+	 * @return 変換キーが正しければTrue
+	 */
+	private boolean setOrientedCorners(MarkerWorkspace workspace) {
+		Mat datImage = workspace.getMarkerImage();
 		// 変換後座標設定
-		Mat dstPointMat = new Mat(4, 2, CvType.CV_32F);
+		Mat dstPointMat = workspace.getDstPointMat();
 		float[] dstPoint;
-		switch (TransformKey) {
+		switch (workspace.getTransformKey()) {
 		case 1:// 基準マーカ（マーカの角）はmarkerOutLinePoint[0]である
-			dstPoint = new float[] { 0, 0, srcImage.cols(), 0, srcImage.cols(), srcImage.rows(), 0, srcImage.rows() };
+			dstPoint = new float[] { datImage.cols(), datImage.rows(), datImage.cols(), 0, 0, 0, 0, datImage.rows() };
 			dstPointMat.put(0, 0, dstPoint);
 			// System.out.println("通過1");
 			break;
 		case 2:// markerOutLinePoint[1]が左上になるように変換
-			dstPoint = new float[] { 0, srcImage.rows(), 0, 0, srcImage.cols(), 0, srcImage.cols(), srcImage.rows() };
+			dstPoint = new float[] { datImage.cols(), 0, 0, 0, 0, datImage.rows(), datImage.cols(), datImage.rows() };
 			dstPointMat.put(0, 0, dstPoint);
 			// System.out.println("通過2");
 			break;
 		case 3:// markerOutLinePoint[2]が左上になるように変換
-			dstPoint = new float[] { srcImage.cols(), srcImage.rows(), 0, srcImage.rows(), 0, 0, srcImage.cols(), 0 };
+			dstPoint = new float[] { 0, 0, 0, datImage.rows(), datImage.cols(), datImage.rows(), datImage.cols(), 0 };
 			dstPointMat.put(0, 0, dstPoint);
 			// System.out.println("通過3");
 			break;
 		case 4:// markerOutLinePoint[3]が左上になるように変換
-			dstPoint = new float[] { srcImage.cols(), 0, srcImage.cols(), srcImage.rows(), 0, srcImage.rows(), 0, 0 };
+			dstPoint = new float[] { 0, datImage.rows(), datImage.cols(), datImage.rows(), datImage.cols(), 0, 0, 0 };
 			dstPointMat.put(0, 0, dstPoint);
 			// System.out.println("通過4");
 			break;
 		default:// 枠外エラー
-			System.out.println("error");
-			return;
+			if (debugOutput) {
+				System.out.println("error");
+			}
+			return false;
 		}
+		return true;
+	}
 
-		// 変換行列作成
-		Mat r_mat = Imgproc.getPerspectiveTransform(srcPointMat, dstPointMat);
-		// 図形変換処理
-		Mat dstMat = new Mat(datImage.rows(), datImage.cols(), datImage.type());
-		Imgproc.warpPerspective(srcImage, dstMat, r_mat, dstMat.size(), Imgproc.INTER_LINEAR);
-		Mat cuttingImage = new Mat(dstMat, new Rect(0, 0, datImage.cols(), datImage.rows()));
-		cuttingImage.copyTo(datImage);
+	/**
+	 * マーカ画像を作成せず、各ブロックの中心を変換行列で入力画像上の座標に戻して直接取得する<br>
+	 * 取得はremapによる双線形補間で行い、ブロック数×ブロック数のHSV画像としてworkspaceのcellImageに出力する。<br>
+	 * 処理量は出力画像の画素数ではなくブロック数に比例する。
+	 *
+	 * @param webcamImage
+	 *            入力画像(BGR)
+	 * @param workspace
+	 *            setOrientedCornersで四隅を設定済みのマーカの作業領域
+	 * @param division
+	 *            マーカの行列分割値
+	 * @see VisibleLightReceiver2#setOrientedCorners(MarkerWorkspace)
+	 */
+	private void projectCells(Mat webcamImage, MarkerWorkspace workspace, int division) {
+		workspace.prepareCells(division);
+		// マーカ画像上の座標から入力画像上の座標への変換行列作成
+		Mat inverseMat = Imgproc.getPerspectiveTransform(workspace.getDstPointMat(), workspace.getSrcPointMat());
+		double[] h = new double[9];
+		inverseMat.get(0, 0, h);
+		inverseMat.release();
+		float[] mapX = new float[division * division];
+		float[] mapY = new float[division * division];
+		double cellSize = Constants.MARKER_IMAGE_SIZE / (double) division;
+		for (int i = 0; i < division; i++) {
+			for (int j = 0; j < division; j++) {
+				double x = (j + 0.5) * cellSize;
+				double y = (i + 0.5) * cellSize;
+				double w = h[6] * x + h[7] * y + h[8];
+				mapX[i * division + j] = (float) ((h[0] * x + h[1] * y + h[2]) / w);
+				mapY[i * division + j] = (float) ((h[3] * x + h[4] * y + h[5]) / w);
+			}
+		}
+		workspace.getCellMapX().put(0, 0, mapX);
+		workspace.getCellMapY().put(0, 0, mapY);
+		Mat cellImage = workspace.getCellImage();
+		Imgproc.remap(webcamImage, cellImage, workspace.getCellMapX(), workspace.getCellMapY(), Imgproc.INTER_LINEAR);
+		Imgproc.cvtColor(cellImage, cellImage, Imgproc.COLOR_BGR2HSV);// ブロック数分の画素のみHSV変換
 	}
 
 	/**
-	 * 入力された画像内のカラー・コードを取得しListに保存する。
+	 * 入力された画像内のカラー・コードを取得しsymbolBufferに保存する。<br>
+	 * 画素値はMat.getを1ブロックずつ呼ばず、一括で読み出したpixelsから取得する。<br>
+	 * 受信の成否の判断はmatchReceiveListで行うため、別々のsymbolBufferであれば並列に呼び出せる。
 	 *
 	 * @param srcImage
 	 *            入力画像
+	 * @param pixels
+	 *            srcImageから一括で読み出した画素値
 	 * @param startX
 	 *            処理範囲の左上ｘ座標
 	 * @param startY
@@ -344,23 +643,24 @@ public class VisibleLightReceiver2 extends Thread {
 	 *            処理範囲の右下ｘ座標
 	 * @param division
 	 *            マーカの行列分割値
+	 * @param drawSamplePoint
+	 *            色情報取得点をsrcImageに描画する場合はtrue
+	 * @param calibration
+	 *            四隅のブロックから求めた色補正(補正しない場合はnull)
+	 * @param symbolBuffer
+	 *            読み取ったカラー・コードの格納先
+	 * @see VisibleLightReceiver2#matchReceiveList(SymbolBuffer)
 	 */
-	private void colorDecorde(Mat srcImage, double startX, double startY, double endX, double endY, int division) {
+	void colorDecorde(Mat srcImage, byte[] pixels, double startX, double startY, double endX, double endY, int division,
+			boolean drawSamplePoint, ColorCalibration calibration, SymbolBuffer symbolBuffer) {
 		double[] data = new double[Constants.HSV_CH];// HSV各チャンネル格納用
 		double oneThirdWidth = (endX - startX) / division;
 		double oneThirdHeight = (endY - startY) / division;
-		int indexCounter = 0;
-		int missCount = 0;
-		int hexadecimalOfBloc = 0;
 		// int loopCount = 0;
 		int inImgByteArrayIndex = 0;
 		byte blocDecordeCount = 1;
 
 		for (int i = 0; i < division; i++) {
-			if (missCount > 0) {
-				break;
-			}
-
 			for (int j = 0; j < division; j++) {
 
 				if (i == 0 && j == 0 || i == 0 && j == division - 1 || i == division - 1 && j == 0
@@ -368,54 +668,30 @@ public class VisibleLightReceiver2 extends Thread {
 				} else {
 					int x = (int) (startX + (j * oneThirdWidth + (j + 1) * oneThirdWidth) / 2);
 					int y = (int) (startY + (i * oneThirdHeight + (i + 1) * oneThirdHeight) / 2);
-					data = srcImage.get(y, x);// HSV各チャンネルを格納(y,x)なので注意
-
-					Imgproc.circle(srcImage, new Point(x, y), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化
-					for (int k = 0; k <= data.length; k++) {
-						if (k % 2 == 0) {
-							Imgproc.circle(srcImage, new Point(x - 3, y + 3), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化(まだ平均値を取得未実装)
-							Imgproc.circle(srcImage, new Point(x + 3, y + 3), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化(まだ平均値を取得未実装)
-						} else {
-							Imgproc.circle(srcImage, new Point(x - 3, y - 3), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化(まだ平均値を取得未実装)
-							Imgproc.circle(srcImage, new Point(x + 3, y - 3), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化(まだ平均値を取得未実装)
+					readPixel(pixels, srcImage.cols(), y, x, data);// HSV各チャンネルを格納(y,x)なので注意
+
+					if (drawSamplePoint) {
+						Imgproc.circle(srcImage, new Point(x, y), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化
+						for (int k = 0; k <= data.length; k++) {
+							if (k % 2 == 0) {
+								Imgproc.circle(srcImage, new Point(x - 3, y + 3), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化(まだ平均値を取得未実装)
+								Imgproc.circle(srcImage, new Point(x + 3, y + 3), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化(まだ平均値を取得未実装)
+							} else {
+								Imgproc.circle(srcImage, new Point(x - 3, y - 3), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化(まだ平均値を取得未実装)
+								Imgproc.circle(srcImage, new Point(x + 3, y - 3), 1, new Scalar(255, 255, 255), -1);// 色情報取得点可視化(まだ平均値を取得未実装)
+							}
 						}
-						hsvImageFrame.repaint();// パネルを再描画
 					}
 					// H（色相）S(彩度) V(明度)を元に色を判断;
-					// 8色用(白黒も入れて10色)メインで使用
-					if (data[1] < 100 && data[2] >= 150) {
-						receiveList.add("no");// 白
-						hexadecimalOfBloc += Constants.BLOC_COLLAR_OF_WHITE;
-					} else if (data[2] < 100) {
-						receiveList.add("space");// 黒
-					} else if (data[1] >= 100 && data[0] * 2 >= 0 && data[0] * 2 < 20) {
-						receiveList.add("1");// 赤
-						hexadecimalOfBloc += Constants.BLOC_COLLAR_OF_RED;
-					} else if (data[1] >= 100 && data[0] * 2 >= 20 && data[0] * 2 < 35) {
-						receiveList.add("7");// オレンジ
-						hexadecimalOfBloc += Constants.BLOC_COLLAR_OF_ORANGE;
-					} else if (data[1] >= 100 && data[0] * 2 >= 35 && data[0] * 2 < 80) {
-						receiveList.add("4");// 黄色
-						hexadecimalOfBloc += Constants.BLOC_COLLAR_OF_YELLOW;
-					} else if (data[1] >= 100 && data[0] * 2 >= 80 && data[0] * 2 < 148) {
-						receiveList.add("2");// 緑
-						hexadecimalOfBloc += Constants.BLOC_COLLAR_OF_GREEN;
-					} else if (data[1] >= 100 && data[0] * 2 >= 148 && data[0] * 2 < 195) {
-						receiveList.add("5");// 水色
-						hexadecimalOfBloc += Constants.BLOC_COLLAR_OF_CYAN;
-					} else if (data[1] >= 100 && data[0] * 2 >= 195 && data[0] * 2 < 258) {
-						receiveList.add("3");// 青
-						hexadecimalOfBloc += Constants.BLOC_COLLAR_OF_BULE;
-					} else if (data[1] >= 100 && data[0] * 2 >= 258 && data[0] * 2 < 300) {
-						receiveList.add("8");// 紫
-						hexadecimalOfBloc += Constants.BLOC_COLLAR_OF_PURPLE;
-					} else if (data[1] >= 100 && data[0] * 2 >= 300 && data[0] * 2 < 330) {
-						receiveList.add("6");// マゼンタ
-						hexadecimalOfBloc += Constants.BLOC_COLLAR_OF_MAGENTA;
-					} else {
-						receiveList.add("error");
+					// 8色用(白黒も入れて10色)メインで使用 しきい値から作成済みのテーブルを参照する
+					if (calibration != null) {
+						calibration.correct(data);// しきい値を四隅の色に合わせて移動する代わりに画素値を補正
+					}
+					byte symbol = symbolTable.classify(data);// 記号はカラー・コード番号(白:0 黒:COLORENCODE_SPACE)
+					if (debugOutput && symbol == SymbolBuffer.SYMBOL_ERROR) {
 						System.out.println("errorの数値\n" + data[0] * 2 + " " + data[1] + " " + data[2]);
 					}
+					symbolBuffer.add(symbol);
 					//
 					// if (blocDecordeCount <= Constants.BLOCK_OF_BYTE) {
 					// inImgBytes[inImgByteArrayIndex] = (byte)
@@ -429,131 +705,500 @@ public class VisibleLightReceiver2 extends Thread {
 					// hexadecimalOfBloc = (hexadecimalOfBloc << 4);
 					// }
 
-					System.out.println(
-							(i * (division - 1) + j) + "つ目のブロック" + (data[0] * 2) + " " + data[1] + " " + data[2]);
+					if (debugOutput) {
+						System.out.println(
+								(i * (division - 1) + j) + "つ目のブロック" + (data[0] * 2) + " " + data[1] + " " + data[2]);
+					}
 					blocDecordeCount++;
 					// loopCount++;
-					if (receiveList.isEmpty() || createTransmisstionImage2.getTransmissionList().isEmpty()) {
-						System.out.println("送受信が行われていません");
-					} else if (createTransmisstionImage2.getTransmissionList().size() != receiveList.size()) {
-						// System.out.println("送受信の設定が間違っています");
-						// System.out.println("受信データ数" + receiveList.size());
-						// System.out.println("送信データ数" +
-						// createTransmisstionImage2.getTransmissionList().size());
-					} else if (createTransmisstionImage2.getTransmissionList().size() == receiveList.size()) {
-						listCountCheck = true;
-					}
-					if (!receiveList.isEmpty() && !createTransmisstionImage2.getTransmissionList().get(indexCounter)
-							.equals(receiveList.get(indexCounter))) {
-						missCount++;
-						System.out.println(indexCounter + "つめの送信dataが"
-								+ createTransmisstionImage2.getTransmissionList().get(indexCounter) + "に対して"
-								+ "受信されたもの値が" + receiveList.get(indexCounter) + "だったため取得ミスです");
-						listCountCheck = false;
-						clearReceiveList();
-						indexCounter = 0;
-						break;
-					} else if (missCount == 0 && listCountCheck == true) {
-						setRunningKey(false);
-					}
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * 読み取ったカラー・コードを4ブロックずつbyteに戻し、PanelPayloadの形式として誤りの訂正とCRCの確認を行う。<br>
+	 * 読み取れなかったブロックを含むbyteは消失として扱うため、位置の分からない誤りの2倍の数まで訂正できる。<br>
+	 * 送信リストとは照合しないため、送信機と別の環境で動作していても受信の成否を判断できる。<br>
+	 * CRCが一致すれば受信を終了し、受信リストには訂正前の記号を残す。一致しなければ受信リストをクリアする。
+	 *
+	 * @param symbolBuffer
+	 *            1つのマーカから読み取ったカラー・コード
+	 * @see PanelPayload#decode(byte[], boolean[], ReedSolomon)
+	 */
+	private void matchReceiveList(SymbolBuffer symbolBuffer) {
+		int capacity = PanelPayload.capacity(division);
+		byte[] encodedBytes = new byte[capacity];
+		boolean[] erasures = new boolean[capacity];
+		int erasureCount = 0;
+		for (int i = 0; i < capacity; i++) {
+			int firstHalfFourBits = fourBitsOfBlocs(symbolBuffer, i * Constants.BLOCK_OF_BYTE);
+			int secondHalfFourBits = fourBitsOfBlocs(symbolBuffer,
+					i * Constants.BLOCK_OF_BYTE + Constants.COLORENCORD_BITS_SECOND_HALF);
+			if (firstHalfFourBits < 0 || secondHalfFourBits < 0) {
+				erasures[i] = true;
+				erasureCount++;
+			} else {
+				encodedBytes[i] = (byte) ((firstHalfFourBits << 4) | secondHalfFourBits);
+			}
+		}
+		byte[] data = PanelPayload.decode(encodedBytes, erasures, reedSolomon);
+		if (panelListener != null) {
+			panelListener.panelDecoded(symbolBuffer, data != null);
+		}
+		clearReceiveList();
+		receiveSymbols.addAll(symbolBuffer);
+		if (data != null) {
+			inImgBytes = data;
+			if (reedSolomon != null) {
+				System.out.println(reedSolomon.getCorrectedCount() + "B(うち読み取れなかったもの" + erasureCount + "B)を訂正しました");
+			}
+			listCountCheck = true;
+			setRunningKey(false);
+		} else {
+			System.out.println("誤りの訂正またはCRCの確認に失敗したため取得ミスです");
+			listCountCheck = false;
+			clearReceiveList();
+		}
+	}
+
+	/**
+	 * 2つのブロックのカラー・コード番号の和から4bitの値を求める(CreateTransmisstionImage2.colorEncodePatternの逆変換)
+	 *
+	 * @param symbolBuffer
+	 *            読み取ったカラー・コード
+	 * @param index
+	 *            1つめのブロックの位置
+	 * @return 4bitの値。ブロックが足りない、色でない(error,space)、和が4bitを超える場合は-1
+	 */
+	private int fourBitsOfBlocs(SymbolBuffer symbolBuffer, int index) {
+		if (index + 1 >= symbolBuffer.size()) {
+			return -1;
+		}
+		byte first = symbolBuffer.get(index);
+		byte second = symbolBuffer.get(index + 1);
+		if (first < Constants.BLOC_COLLAR_OF_WHITE || first > Constants.COLLAR_VARIATION
+				|| second < Constants.BLOC_COLLAR_OF_WHITE || second > Constants.COLLAR_VARIATION) {
+			return -1;
+		}
+		int fourBits = first + second;
+		return fourBits < Constants.HEXADECIMAL_NOTATION ? fourBits : -1;
+	}
+
+	/**
+	 * 一括で読み出した画素値から1画素分のHSV各チャンネルを取り出す
+	 *
+	 * @param pixels
+	 *            一括で読み出した画素値
+	 * @param cols
+	 *            画像の幅
+	 * @param y
+	 *            取得するy座標
+	 * @param x
+	 *            取得するx座標
+	 * @param data
+	 *            HSV各チャンネルの格納先
+	 */
+	private void readPixel(byte[] pixels, int cols, int y, int x, double[] data) {
+		int index = (y * cols + x) * Constants.HSV_CH;
+		for (int c = 0; c < Constants.HSV_CH; c++) {
+			data[c] = pixels[index + c] & 0xff;
+		}
+	}
 
-					indexCounter++;
+	/**
+	 * キャプチャステージ<br>
+	 * カラー・コードを認識するまでwebカメラの映像を取得し、マーカ検出ステージに渡す。
+	 */
+	private void captureLoop() {
+		boolean firstFrame = true;
+		while (runningKey) {
+			FrameBuffer buffer = bufferPool.acquire();
+			if (buffer == null) {// 全てのFrameBufferが後段で処理中
+				Thread.yield();
+				continue;
+			}
+			Mat webcamImage = buffer.getWebcamImage();// webカメラのイメージ
+			// webカメラの映像を画像保存。FrameBufferは使い回すため、取得の成否は戻り値で判断する
+			if (!frameSource.read(webcamImage) || webcamImage.empty()) {
+				bufferPool.recycle(buffer);
+				System.out.println(" --(!) No captured frame -- Break!");// キャプチャの失敗時
+				if (!frameSource.isOpened()) {
+					if (frameSource instanceof CameraFrameSource) {
+						JOptionPane.showMessageDialog(null, "カメラが認識されていません、再度確認してください", "Warn", JOptionPane.WARNING_MESSAGE);
+					}
+					stopRunning();
 				}
+				continue;
 			}
+			if (firstFrame && frameSource instanceof CameraFrameSource) {
+				// カメラへの問い合わせはキャプチャと同じスレッドで行う
+				((CameraFrameSource) frameSource).printCaptureProperty();
+			}
+			firstFrame = false;
+			bufferPool.recycle(detectQueue.offer(buffer));
 		}
-		// int i = 0;
-		// for (String d : receiveList) {
-		//
-		// System.out.println(i + "つ目" + d);
-		// i++;
-		// }
+	}
+
+	/**
+	 * マーカ検出ステージ<br>
+	 * 輪郭からカラー・コードマーカを探し、見つかればデコードステージ、見つからなければプレビューステージに渡す。
+	 */
+	private void detectLoop() {
+		while (runningKey) {
+			FrameBuffer buffer = takeFrame(detectQueue);
+			if (buffer == null) {
+				continue;
+			}
+			detectMarker(buffer);
+			if (buffer.getMarkerCount() > 0) {
+				bufferPool.recycle(decodeQueue.offer(buffer));
+			} else {
+				handOverToPreview(buffer);
+			}
+		}
+	}
+
+	/**
+	 * デコードステージ<br>
+	 * 検出されたマーカからカラー・コードを取得し、プレビューステージに渡す。
+	 */
+	private void decodeLoop() {
+		while (runningKey) {
+			FrameBuffer buffer = takeFrame(decodeQueue);
+			if (buffer == null) {
+				continue;
+			}
+			if (!runningKey) {// 取得成功後に残ったフレームで受信リストを上書きしない
+				bufferPool.recycle(buffer);
+				break;
+			}
+			decodeMarker(buffer);
+			handOverToPreview(buffer);
+		}
+	}
+
+	/**
+	 * プレビューステージ<br>
+	 * 加工画像とマーカのH(色相)画像をパネルに描画する。
+	 */
+	private void previewLoop() {
+		while (runningKey) {
+			FrameBuffer buffer = takeFrame(previewQueue);
+			if (buffer == null) {
+				continue;
+			}
+			previewFrame(buffer);
+			bufferPool.recycle(buffer);
+		}
+	}
+
+	/**
+	 * プレビューステージにフレームを渡す。表示先がなければそのままプールに返却する。
+	 *
+	 * @param buffer
+	 *            処理済みのFrameBuffer
+	 */
+	private void handOverToPreview(FrameBuffer buffer) {
+		if (isPreviewEnabled()) {
+			bufferPool.recycle(previewQueue.offer(buffer));
+		} else {
+			bufferPool.recycle(buffer);
+		}
+	}
 
+	/**
+	 * 画像の表示先があるかを返す
+	 *
+	 * @return 表示先が1つでもあればTrue
+	 */
+	private boolean isPreviewEnabled() {
+		return processedImageSink != null || markerImageSink != null;
+	}
+
+	/**
+	 * キューからフレームを取り出す。受信中断を確認できるよう一定時間で待ちを打ち切る。
+	 *
+	 * @param queue
+	 *            取り出し元のキュー
+	 * @return 取り出したフレーム。なければnull
+	 */
+	private FrameBuffer takeFrame(LatestFrameQueue<FrameBuffer> queue) {
+		try {
+			return queue.poll(Constants.PIPELINE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			return null;
+		}
 	}
 
 	/**
-	 * カラー・コードを認識するまで受信処理をループ
+	 * FrameBufferをまとめてプールに返却する
+	 *
+	 * @param buffers
+	 *            返却するFrameBuffer
 	 */
-	private void receiverLoop() {
-		Mat markerImage = new Mat(500, 500, 16);
+	private void recycleAll(List<FrameBuffer> buffers) {
+		for (FrameBuffer buffer : buffers) {
+			bufferPool.recycle(buffer);
+		}
+	}
 
-		List<MatOfPoint> contoursList = new ArrayList<MatOfPoint>();// 読み取った輪郭線を格納
-		List<MatOfPoint> dorawOutLineList = new ArrayList<>();// 認識した矩形マーカの輪郭線を格納
-		List<Mat> hsvList = new ArrayList<Mat>();
+	/**
+	 * 取得した画像からカラー・コードマーカを検出し、傾きを修正したマーカ画像をマーカの作業領域のmarkerImageに出力する。<br>
+	 * マーカ追跡中は前回の位置の周辺、縮小画像での検出を利用する場合は候補の周辺のみを元の解像度で輪郭検出する。<br>
+	 * 複数のマーカをデコードする場合は四角形の四隅のみを作業領域に設定し、マーカであるかの確認はデコードステージで行う。
+	 *
+	 * @param buffer
+	 *            キャプチャ済みのFrameBuffer
+	 */
+	void detectMarker(FrameBuffer buffer) {
+		List<MatOfPoint> contoursList = buffer.getContoursList();// 読み取った輪郭線を格納
 		// Listの宣言はループ内に移動Listのクリアが不要となった15/11/1(岩男
-		Mat webcamImage = new Mat();// webカメラのイメージ
-		captureCamera.read(webcamImage);// webカメラの映像を画像保存
-		if (webcamImage.empty()) {// 画像が取得できているか判断
-			System.out.println(" --(!) No captured frame -- Break!");// キャプチャの失敗時
-			if (!captureCamera.isOpened()) {
-				JOptionPane.showMessageDialog(null, "カメラが認識されていません、再度確認してください", "Warn", JOptionPane.WARNING_MESSAGE);
-				stopRunning();
+		// →FrameBufferで使い回すためclearContours()でクリアする
+		Mat webcamImage = buffer.getWebcamImage();// webカメラのイメージ
+		buffer.prepare(webcamImage);// 最初のフレームのサイズで作業用Matを確保
+		buffer.clearMarkers();
+		Mat processedImage = buffer.getProcessedImage();
+		Mat valueImage = buffer.getValueImage();
+		if (fullFrameHsv) {
+			Mat hsvImage = buffer.getHsvImage();
+			Imgproc.cvtColor(webcamImage, hsvImage, Imgproc.COLOR_BGR2HSV);
+			Core.extractChannel(hsvImage, valueImage, 2);
+		} else {
+			// V(明度)はBGRの最大値なので、画像全体のHSV変換は行わずに求める
+			Mat channelImage = buffer.getChannelImage();
+			Core.extractChannel(webcamImage, valueImage, 0);
+			Core.extractChannel(webcamImage, channelImage, 1);
+			Core.max(valueImage, channelImage, valueImage);
+			Core.extractChannel(webcamImage, channelImage, 2);
+			Core.max(valueImage, channelImage, valueImage);
+		}
+		Mat hierarchyData = buffer.getHierarchyData();// 読み取った輪郭線の階層情報
+		Rect searchRegion = trackingMode && decodePool == null ? markerTracker.getSearchRegion(webcamImage.cols(), webcamImage.rows()) : null;
+		if (searchRegion != null) {
+			// 前回のマーカ周辺のみ二値化、輪郭検出を行う
+			processedImage.setTo(new Scalar(0));
+			detectMarkerInRegion(buffer, searchRegion);
+		} else if (pyramidDetector != null) {
+			// 縮小画像で見つけた候補の周辺のみ元の解像度で二値化、輪郭検出を行う
+			processedImage.setTo(new Scalar(0));
+			for (Rect candidateRegion : pyramidDetector.findCandidateRegions(valueImage, 50, 1000)) {
+				detectMarkerInRegion(buffer, candidateRegion);
 			}
-			return;
+		} else {
+			Imgproc.threshold(valueImage, processedImage, 50, 255, Imgproc.THRESH_BINARY);
+			// Imgproc.cvtColor(webc0amImage,
+			// processedImage,Imgproc.COLOR_BGR2GRAY);グレースケール化
+			// Imgproc.threshold(processedImage, processedImage, 0,
+			// 255,Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);// 二値化
+			Imgproc.findContours(processedImage, contoursList, hierarchyData, Imgproc.RETR_CCOMP,
+					Imgproc.CHAIN_APPROX_SIMPLE);// 画像内の輪郭を検出
+			checkContours(buffer);
+		}
+		if (buffer.getMarkerCount() == 0) {
+			markerTracker.markerMissed();
+		}
+		if (processedImageSink != null) {
+			Imgproc.drawContours(processedImage, buffer.getDorawOutLineList(), -1, new Scalar(254, 0, 0), 5);// 輪郭画像にマーカ輪郭を表示
 		}
-		Mat processedImage = new Mat(webcamImage.rows(), webcamImage.cols(), webcamImage.type());
-		Mat hsvImage = new Mat(webcamImage.rows(), webcamImage.cols(), webcamImage.type());
-		Imgproc.cvtColor(webcamImage, hsvImage, Imgproc.COLOR_BGR2HSV);
-		Core.split(hsvImage, hsvList);
-		Mat valueImage = hsvList.get(2).clone();
-		Imgproc.threshold(valueImage, processedImage, 50, 255, Imgproc.THRESH_BINARY);
-		Mat hierarchyData = new Mat();// 読み取った輪郭線の階層情報
-		processedImageFrame.setSize(processedImage.width() + 40, processedImage.height() + 60);// ウィンドウサイズを取得画像に合ったサイズに
-		hsvImageFrame.setSize(markerImage.width() + 35, markerImage.height() + 55);// ウィンドウサイズを取得画像に合ったサイズに
-		// Imgproc.cvtColor(webc0amImage,
-		// processedImage,Imgproc.COLOR_BGR2GRAY);グレースケール化
-		// Imgproc.threshold(processedImage, processedImage, 0,
-		// 255,Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);// 二値化
-		Imgproc.findContours(processedImage, contoursList, hierarchyData, Imgproc.RETR_CCOMP,
-				Imgproc.CHAIN_APPROX_SIMPLE);// 画像内の輪郭を検出
+	}
+
+	/**
+	 * 指定範囲のみ二値化、輪郭検出を行いマーカを探す。輪郭の座標は画像全体の座標に戻す。
+	 *
+	 * @param buffer
+	 *            キャプチャ済みのFrameBuffer
+	 * @param region
+	 *            探索範囲
+	 */
+	private void detectMarkerInRegion(FrameBuffer buffer, Rect region) {
+		Mat valueRegion = buffer.getValueImage().submat(region);
+		Mat processedRegion = buffer.getProcessedImage().submat(region);
+		Imgproc.threshold(valueRegion, processedRegion, 50, 255, Imgproc.THRESH_BINARY);
+		Imgproc.findContours(processedRegion, buffer.getContoursList(), buffer.getHierarchyData(), Imgproc.RETR_CCOMP,
+				Imgproc.CHAIN_APPROX_SIMPLE, new Point(region.x, region.y));// 範囲内の輪郭を検出
+		valueRegion.release();
+		processedRegion.release();
+		checkContours(buffer);
+	}
 
+	/**
+	 * 検出した輪郭を直線に近似し、カラー・コードマーカであるかを確認する<br>
+	 * 1フレームにつき最初に見つかったマーカのみ傾きを修正して作業領域のmarkerImageに出力する。<br>
+	 * 複数のマーカをデコードする場合は、四角形であれば確認を行わずにMULTI_MARKER_LIMIT個まで作業領域に追加する。
+	 *
+	 * @param buffer
+	 *            輪郭検出済みのFrameBuffer
+	 */
+	private void checkContours(FrameBuffer buffer) {
+		List<MatOfPoint> contoursList = buffer.getContoursList();
+		List<MatOfPoint> dorawOutLineList = buffer.getDorawOutLineList();
+		Mat hierarchyData = buffer.getHierarchyData();
+		MatOfPoint2f ptmat2Temp = buffer.getApproxCurve();// 画像処理の途中でMatOfPoint2fに一時変換するため
+		Mat srcImage = fullFrameHsv ? buffer.getHsvImage() : buffer.getWebcamImage();
 		for (int i = 0; i < contoursList.size(); i++) {// 取得した輪郭の総数でループ
 			if (hierarchyData.get(0, i)[3] == -1) {// 内部輪郭を持つ輪郭を弾く
-				MatOfPoint2f ptmat2Temp = new MatOfPoint2f();// 画像処理の途中でMatOfPoint2fに一時変換するため
 				contoursList.get(i).convertTo(ptmat2Temp, CvType.CV_32FC2);// 画像処理のためMatOfPointをMatOfPoint2fに変換
 				Imgproc.approxPolyDP(ptmat2Temp, ptmat2Temp, 10, true);// 輪郭を直線に近似する
 				ptmat2Temp.convertTo(contoursList.get(i), CvType.CV_32S);// MatOfPoint2fをMatOfPointに再変換
 				if (rectangleChecker(contoursList.get(i), 4000)) {
 					dorawOutLineList.add(contoursList.get(i));// マーカであることが確定した輪郭を描画リストに追加
 				}
-				if (markerChecker(contoursList.get(i), hsvImage, markerImage, 1000, division)) {// 輪郭が正方形であるかチェック
-					transformMarker(markerImage, markerImage, TransformKey);
-					// Imgproc.medianBlur(markerImage, markerImage, 3);//
-					// 画像のノイズ処理→平滑化
-					colorDecorde(markerImage, 0, 0, markerImage.height(), markerImage.width(), division);
-
-					// if (inImgBytes.length != 0) {
-					// for (byte b : inImgBytes) {
-					// System.out.println(b);
-					// }
-					// }
+				if (decodePool != null) {
+					// マーカであるかの確認はデコードステージで四角形ごとに並列に行う
+					if (buffer.getMarkerCount() < Constants.MULTI_MARKER_LIMIT
+							&& rectangleChecker(contoursList.get(i), 1000)) {
+						setMarkerCorners(contoursList.get(i), buffer.nextMarkerWorkspace());
+						buffer.addMarker();
+					}
+				} else if (buffer.getMarkerCount() == 0 && rectangleChecker(contoursList.get(i), 1000)) {
+					// 1フレームにつき最初に見つかったマーカのみをデコードステージに渡す
+					MarkerWorkspace workspace = buffer.nextMarkerWorkspace();
+					setMarkerCorners(contoursList.get(i), workspace);
+					if (markerChecker(srcImage, workspace, division)) {// 輪郭が正方形であるかチェック
+						prepareMarker(srcImage, workspace);
+						// Imgproc.medianBlur(markerImage, markerImage, 3);//
+						// 画像のノイズ処理→平滑化
+						buffer.addMarker();
+						markerTracker.markerFound(contoursList.get(i));
+					}
+				}
+			}
+		}
+		// 描画リストに追加しなかった輪郭はここで解放する(次の輪郭検出でリストが上書きされるため)
+		for (MatOfPoint contour : contoursList) {
+			if (!dorawOutLineList.contains(contour)) {
+				contour.release();
+			}
+		}
+		contoursList.clear();
+	}
 
-					List<Mat> hsvList2 = new ArrayList<Mat>();
-					Core.split(markerImage, hsvList2);
-					Mat hImage = hsvList2.get(0).clone();
-					BufferedImage bufferedImageTemp1 = imageDrawing.matToBufferedImage(hImage);// 描画のためmat型からbufferedImage型に変換
-					hsvImagePanel.setimage(bufferedImageTemp1);// 変換した画像をPanelに追加
-					hsvImageFrame.repaint();// パネルを再描画
-					System.out.println("設定でのフレームレートは\n" + captureCamera.get(Videoio.CAP_PROP_FPS) + "\n現在のキャプチャモードは"
-							+ captureCamera.get(Videoio.CAP_MODE_BGR) + "\n明るさは"
-							+ captureCamera.get(Videoio.CAP_PROP_BRIGHTNESS) + "\nコントラストは"
-							+ captureCamera.get(Videoio.CAP_PROP_CONTRAST) + "\n彩度は"
-							+ captureCamera.get(Videoio.CAP_PROP_SATURATION) + "\n色相は"
-							+ captureCamera.get(Videoio.CAP_PROP_HUE) + "\nゲインは"
-							+ captureCamera.get(Videoio.CAP_PROP_GAIN) + "\n露出は"
-							+ captureCamera.get(Videoio.CAP_PROP_EXPOSURE));
-					if(runningKey==false&&listCountCheck==true){
-						System.out.println("受信されたリストのサイズ" + receiveList.size()+"により\n取得成功しました");
-						}
+	/**
+	 * markerCheckerで傾きを判断したマーカをデコードできる状態にする<br>
+	 * ブロックの中心のみ取得する場合は四隅の対応のみ設定し、変換はデコード時にブロックの中心のみ行う。
+	 *
+	 * @param srcImage
+	 *            入力画像(hsvImage、画像全体のHSV変換を省略する場合はwebcamImage)
+	 * @param workspace
+	 *            マーカの作業領域
+	 */
+	private void prepareMarker(Mat srcImage, MarkerWorkspace workspace) {
+		if (warpFreeDecode) {
+			setOrientedCorners(workspace);
+		} else {
+			transformMarker(srcImage, workspace);
+		}
+	}
+
+	/**
+	 * 検出されたマーカ画像からカラー・コードを取得する<br>
+	 * 複数のマーカをデコードする場合は四角形ごとの確認とデコードを並列に行い、
+	 * 送信リストとの照合は検出順に1つずつ行う。
+	 *
+	 * @param buffer
+	 *            マーカ検出済みのFrameBuffer
+	 */
+	private void decodeMarker(FrameBuffer buffer) {
+		if (decodePool != null) {
+			decodeMarkersInParallel(buffer);
+		} else {
+			decodeWorkspace(buffer.getWebcamImage(), buffer.getMarkerWorkspace(0));
+		}
+		for (int i = 0; i < buffer.getMarkerCount() && runningKey; i++) {
+			MarkerWorkspace workspace = buffer.getMarkerWorkspace(i);
+			if (workspace.isDecoded()) {
+				matchReceiveList(workspace.getSymbolBuffer());
+			}
+		}
+
+		// if (inImgBytes.length != 0) {
+		// for (byte b : inImgBytes) {
+		// System.out.println(b);
+		// }
+		// }
+
+		if(runningKey==false&&listCountCheck==true){
+			System.out.println("受信されたリストのサイズ" + receiveSymbols.size()+"により\n取得成功しました");
+			}
+	}
+
+	/**
+	 * 検出した四角形ごとにマーカであるかの確認とデコードをdecodePoolで並列に行い、全て終わるまで待つ
+	 *
+	 * @param buffer
+	 *            四角形の四隅を設定済みのFrameBuffer
+	 */
+	private void decodeMarkersInParallel(FrameBuffer buffer) {
+		Mat webcamImage = buffer.getWebcamImage();
+		Mat srcImage = fullFrameHsv ? buffer.getHsvImage() : webcamImage;
+		List<ForkJoinTask<?>> taskList = new ArrayList<ForkJoinTask<?>>();
+		for (int i = 0; i < buffer.getMarkerCount(); i++) {
+			MarkerWorkspace workspace = buffer.getMarkerWorkspace(i);
+			taskList.add(decodePool.submit(() -> {
+				if (markerChecker(srcImage, workspace, division)) {
+					prepareMarker(srcImage, workspace);
+					decodeWorkspace(webcamImage, workspace);
 				}
+			}));
+		}
+		for (ForkJoinTask<?> task : taskList) {
+			task.join();
+		}
+	}
+
+	/**
+	 * 1つのマーカからカラー・コードを取得し、作業領域のsymbolBufferに保存する
+	 *
+	 * @param webcamImage
+	 *            入力画像(BGR、ブロックの中心のみ取得する場合に利用)
+	 * @param workspace
+	 *            prepareMarker済みのマーカの作業領域
+	 */
+	private void decodeWorkspace(Mat webcamImage, MarkerWorkspace workspace) {
+		Mat markerImage = workspace.getMarkerImage();
+		// 補正を無効にした後に、有効だった間に求めた補正が残っていても使わない
+		ColorCalibration calibration = calibrationReference != null ? workspace.getColorCalibration() : null;
+		if (warpFreeDecode) {
+			projectCells(webcamImage, workspace, division);
+			// 1ブロック1画素の画像なので各ブロックの中心はそのまま画素の位置となる
+			colorDecorde(workspace.getCellImage(), workspace.readCellPixels(), 0, 0, division, division, division, false,
+					calibration, workspace.getSymbolBuffer());
+			if (markerImageSink != null) {
+				Imgproc.resize(workspace.getCellImage(), markerImage, markerImage.size(), 0, 0, Imgproc.INTER_NEAREST);// プレビュー用に拡大
 			}
+		} else {
+			colorDecorde(markerImage, workspace.readMarkerPixels(), 0, 0, markerImage.height(), markerImage.width(),
+					division, markerImageSink != null, calibration, workspace.getSymbolBuffer());
+		}
+		if (markerImageSink != null) {
+			Core.extractChannel(markerImage, workspace.getMarkerHueImage(), 0);
 		}
-		Imgproc.drawContours(processedImage, dorawOutLineList, -1, new Scalar(254, 0, 0), 5);// 輪郭画像にマーカ輪郭を表示
-		contoursList.clear();// 輪郭リストをクリア
-		BufferedImage bufferedImageTemp = imageDrawing.matToBufferedImage(processedImage);// 描画のためmat型からbufferedImage型に変換
-		processedImagePanel.setimage(bufferedImageTemp);// 変換した画像をPanelに追加
-		processedImageFrame.repaint();// パネルを再描画
+		workspace.setDecoded(true);
+	}
 
+	/**
+	 * 加工画像とマーカのH(色相)画像をパネルに描画する
+	 *
+	 * @param buffer
+	 *            描画するFrameBuffer
+	 */
+	private void previewFrame(FrameBuffer buffer) {
+		if (markerImageSink != null) {
+			// 複数のマーカをデコードした場合は最初のマーカを描画する
+			for (int i = 0; i < buffer.getMarkerCount(); i++) {
+				if (buffer.getMarkerWorkspace(i).isDecoded()) {
+					markerImageSink.show(buffer.getMarkerWorkspace(i).getMarkerHueImage());
+					break;
+				}
+			}
+		}
+		if (processedImageSink != null) {
+			processedImageSink.show(buffer.getProcessedImage());
+		}
 	}
+
 }
 
 //// 3色用
@@ -0,0 +1,134 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * ベンチマーク用の入力(記録したフレーム、送信データ、マーカ画像)を用意する<br>
+ * 記録したフレームはImageDirectoryFrameSourceで全て読み込んでから測定するため、画像のデコード時間は測定に含まれない。
+ * フレームのディレクトリが指定されていない場合は、四隅のマーカを含む画像(markerFile、既定はConstants.MARK2)に
+ * 送信側で描画したパネルをSyntheticFrameSourceで配置したフレームを利用する。<br>
+ * <br>
+ * 実行方法(ビルド設定がないため手動でコンパイルする):<br>
+ * 1. jmh-core、jmh-generator-annprocess、opencvのjarをクラスパスに指定し、ColorCodeSystemとこのディレクトリのソースをまとめてjavacでコンパイルする
+ * (アノテーション処理でJMHのハーネスが生成される)。<br>
+ * 2. java -Djava.library.path=(opencvのネイティブライブラリ) -cp (同じクラスパス) org.openjdk.jmh.Main -prof gc
+ * で実行すると、ops/sと1操作当たりのメモリ確保量(gc.alloc.rate.norm)が出力される。<br>
+ * 3. 入力を変える場合は -p frameDirectory=(PNG/JPEGのディレクトリ) -p markerFile=(四隅のマーカを含む画像)
+ * -p division=(行列分割値) を指定する。
+ *
+ * @see ImageDirectoryFrameSource
+ * @see SyntheticFrameSource
+ * @author Ogi
+ * @version 1.0
+ */
+public class BenchmarkFrames {
+
+	private static final int SYNTHETIC_FRAME_MARGIN = 70;// 生成したフレームのパネルの周りの黒の余白(ピクセル数)
+
+	private BenchmarkFrames() {
+	}
+
+	/**
+	 * 送信データを用意する
+	 *
+	 * @param dataFile
+	 *            送信するファイル。空文字の場合は乱数のデータ
+	 * @param length
+	 *            乱数のデータの長さ
+	 * @return 送信データ
+	 */
+	public static byte[] loadData(String dataFile, int length) throws Exception {
+		if (!dataFile.isEmpty()) {
+			return java.nio.file.Files.readAllBytes(new File(dataFile).toPath());
+		}
+		byte[] data = new byte[length];
+		new Random(1).nextBytes(data);// 測定ごとに同じデータとなるよう種を固定
+		return data;
+	}
+
+	/**
+	 * 送信画像の元画像を読み込む<br>
+	 * colorEncodeはデータ部分のみを描画し、受信側が向きの判断に使う四隅の基準の色のブロックは描画しないため、
+	 * 四隅のマーカを含む画像が必要となる。読み込めない場合はマーカを検出できない測定を行わないよう例外を投げる。
+	 *
+	 * @param markerFile
+	 *            四隅のマーカを含む画像ファイル。空文字の場合はConstants.MARK2
+	 * @return 送信画像の元画像(BGR)
+	 */
+	public static Mat loadMarkerImage(String markerFile) {
+		String path = markerFile.isEmpty() ? Constants.MARK2 : markerFile;
+		Mat markerImage = Imgcodecs.imread(path);
+		if (markerImage.empty()) {
+			throw new IllegalStateException("四隅のマーカを含む画像" + path + "を読み込めません。-p markerFile=(画像ファイル)で指定してください");
+		}
+		return markerImage;
+	}
+
+	/**
+	 * フレームを読み込み、受信側のdetectMarkerでマーカを検出できたフレームのみを返す
+	 *
+	 * @param receiver
+	 *            マーカ検出に利用する受信側(表示先なし、マーカ追跡なし)
+	 * @param frameDirectory
+	 *            記録したフレームのディレクトリ。空文字の場合は生成したフレーム
+	 * @param markerFile
+	 *            生成したフレームの送信画像の元画像(空文字の場合はConstants.MARK2)
+	 * @param division
+	 *            マーカの行列分割値(生成したフレームの場合に利用)
+	 * @return マーカ検出済みのFrameBuffer
+	 */
+	public static List<FrameBuffer> loadDetectedFrames(VisibleLightReceiver2 receiver, String frameDirectory,
+			String markerFile, int division) throws Exception {
+		FrameSource frameSource;
+		if (!frameDirectory.isEmpty()) {
+			frameSource = new ImageDirectoryFrameSource(new File(frameDirectory), false, true);
+		} else {
+			frameSource = createSyntheticFrames(markerFile, division);
+		}
+		List<FrameBuffer> frames = new ArrayList<FrameBuffer>();
+		FrameBuffer buffer = new FrameBuffer();
+		while (frameSource.read(buffer.getWebcamImage())) {
+			receiver.detectMarker(buffer);
+			if (buffer.getMarkerCount() > 0) {
+				frames.add(buffer);
+				buffer = new FrameBuffer();
+			}
+		}
+		buffer.release();
+		frameSource.release();
+		if (frames.isEmpty()) {
+			throw new IllegalStateException("マーカを検出できたフレームがありません");
+		}
+		System.out.println("マーカを検出できたフレームは" + frames.size() + "枚");
+		return frames;
+	}
+
+	/**
+	 * 送信側で生成したパネルを配置したフレームを用意する
+	 *
+	 * @param markerFile
+	 *            送信画像の元画像(空文字の場合はConstants.MARK2)
+	 * @param division
+	 *            マーカの行列分割値
+	 * @return パネルを1枚登録したSyntheticFrameSource
+	 */
+	private static FrameSource createSyntheticFrames(String markerFile, int division) throws Exception {
+		// 行列分割値がdivisionとなる長さのデータで送信画像を生成する
+		ReedSolomon reedSolomon = Constants.RS_PARITY_BYTES > 0 ? new ReedSolomon(Constants.RS_PARITY_BYTES) : null;
+		int length = PanelPayload.dataCapacity(division, reedSolomon);
+		Mat panel = loadMarkerImage(markerFile);
+		CreateTransmisstionImage2 transmitter = new CreateTransmisstionImage2(loadData("", length), panel, null);
+		if (transmitter.getDivision() != division) {
+			throw new IllegalStateException("送信側の行列分割値" + transmitter.getDivision() + "が指定の" + division + "と一致しません");
+		}
+		transmitter.colorEncode(panel, 42, 42, panel.height() - 43, panel.width() - 43, division);
+		SyntheticFrameSource frameSource = new SyntheticFrameSource(panel.cols() + SYNTHETIC_FRAME_MARGIN * 2,
+				panel.rows() + SYNTHETIC_FRAME_MARGIN * 2, 1);
+		frameSource.addPanel(panel);
+		return frameSource;
+	}
+}
@@ -0,0 +1,72 @@
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CreateTransmisstionImage2.colorEncodeの処理速度を測定する<br>
+ * 送信データからのパネルのデータ作成(データ長、CRC、パリティの付加)はセットアップで1回のみ行い、
+ * 測定はブロックへの配置と描画のみを対象とする。
+ *
+ * @see CreateTransmisstionImage2
+ * @see BenchmarkFrames
+ * @author Ogi
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorEncodeBenchmark {
+
+	@Param({ "" })
+	public String dataFile;// 送信するファイル(空文字の場合は乱数のデータ)
+	@Param({ "" })
+	public String markerFile;// 四隅のマーカを含む画像(空文字の場合はConstants.MARK2)
+	@Param({ "0" })
+	public int dataLength;// 乱数のデータの長さ(0の場合は最大の行列分割値のパネルに収まる長さ)
+
+	private CreateTransmisstionImage2 transmitter;
+	private Mat markerImage;
+
+	@Setup
+	public void setup() throws Exception {
+		int length = dataLength;
+		if (length == 0) {
+			ReedSolomon reedSolomon = Constants.RS_PARITY_BYTES > 0 ? new ReedSolomon(Constants.RS_PARITY_BYTES) : null;
+			length = PanelPayload.dataCapacity(Constants.BLOCL＿TOP_LMIT, reedSolomon);
+		}
+		markerImage = BenchmarkFrames.loadMarkerImage(markerFile);
+		transmitter = new CreateTransmisstionImage2(BenchmarkFrames.loadData(dataFile, length), markerImage, null);
+		if (transmitter.getDivision() == 0) {
+			// パネルに収まらないデータでは何も配置されず、空のループを測定することになる
+			throw new IllegalStateException("送信データがパネルに収まりません。dataFileまたはdataLengthを小さくしてください");
+		}
+	}
+
+	@Benchmark
+	public SymbolBuffer colorEncode() {
+		transmitter.getTransmissionSymbols().clear();// 前回の配置結果を消去(受信照合用リストが増え続けないように)
+		transmitter.colorEncode(markerImage, 42, 42, markerImage.height() - 43, markerImage.width() - 43,
+				transmitter.getDivision());
+		return transmitter.getTransmissionSymbols();
+	}
+
+	@TearDown
+	public void tearDown() {
+		markerImage.release();
+	}
+}
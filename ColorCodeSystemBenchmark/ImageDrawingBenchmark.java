@@ -0,0 +1,82 @@
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ImageDrawing.matToBufferedImageの処理速度を測定する<br>
+ * プレビューで変換する画像と同じく、記録したフレーム(BGR)と二値化画像(グレースケール)の両方を対象とする。
+ *
+ * @see ImageDrawing
+ * @see BenchmarkFrames
+ * @author Ogi
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ImageDrawingBenchmark {
+
+	@Param({ "" })
+	public String frameDirectory;// 記録したフレームのディレクトリ(空文字の場合は生成したフレーム)
+	@Param({ "" })
+	public String markerFile;// 生成したフレームの四隅のマーカを含む画像(空文字の場合はConstants.MARK2)
+	@Param({ "33" })
+	public int division;// マーカの行列分割値(送信側と揃えること)
+
+	private ImageDrawing imageDrawing;
+	private List<FrameBuffer> frames;
+	private int frameIndex;
+
+	@Setup
+	public void setup() throws Exception {
+		VisibleLightReceiver2 receiver = new VisibleLightReceiver2(null, new SyntheticFrameSource(1, 1, 0), null, null);
+		receiver.setDivision(division);
+		receiver.setTrackingMode(false);
+		frames = BenchmarkFrames.loadDetectedFrames(receiver, frameDirectory, markerFile, division);
+		imageDrawing = new ImageDrawing();
+		frameIndex = 0;
+	}
+
+	/**
+	 * 次に処理するフレームを返す
+	 */
+	private FrameBuffer nextFrame() {
+		FrameBuffer buffer = frames.get(frameIndex);
+		frameIndex = (frameIndex + 1) % frames.size();
+		return buffer;
+	}
+
+	@Benchmark
+	public BufferedImage colorFrame() {
+		return imageDrawing.matToBufferedImage(nextFrame().getWebcamImage());
+	}
+
+	@Benchmark
+	public BufferedImage processedFrame() {
+		return imageDrawing.matToBufferedImage(nextFrame().getProcessedImage());
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (FrameBuffer buffer : frames) {
+			buffer.release();
+		}
+	}
+}
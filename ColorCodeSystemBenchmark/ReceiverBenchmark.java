@@ -0,0 +1,97 @@
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * VisibleLightReceiver2のマーカ確認(markerChecker)、射影変換(transformMarker)、デコード(colorDecorde)の処理速度を測定する<br>
+ * セットアップで記録したフレームのマーカを検出しておき、各測定では検出済みのマーカを順番に1つずつ処理する。<br>
+ * 受信側は表示先なし、マーカ追跡なしで生成し、表示用の描画は測定に含めない。
+ *
+ * @see VisibleLightReceiver2
+ * @see BenchmarkFrames
+ * @author Ogi
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReceiverBenchmark {
+
+	@Param({ "" })
+	public String frameDirectory;// 記録したフレームのディレクトリ(空文字の場合は生成したフレーム)
+	@Param({ "" })
+	public String markerFile;// 生成したフレームの四隅のマーカを含む画像(空文字の場合はConstants.MARK2)
+	@Param({ "33" })
+	public int division;// マーカの行列分割値(送信側と揃えること)
+
+	private VisibleLightReceiver2 receiver;
+	private List<FrameBuffer> frames;
+	private SymbolBuffer symbolBuffer;
+	private int frameIndex;
+
+	@Setup
+	public void setup() throws Exception {
+		receiver = new VisibleLightReceiver2(null, new SyntheticFrameSource(1, 1, 0), null, null);
+		receiver.setDivision(division);
+		receiver.setTrackingMode(false);// 毎フレーム画像全体からマーカを検出する
+		frames = BenchmarkFrames.loadDetectedFrames(receiver, frameDirectory, markerFile, division);
+		symbolBuffer = new SymbolBuffer();
+		frameIndex = 0;
+	}
+
+	/**
+	 * 次に処理するフレームを返す
+	 */
+	private FrameBuffer nextFrame() {
+		FrameBuffer buffer = frames.get(frameIndex);
+		frameIndex = (frameIndex + 1) % frames.size();
+		return buffer;
+	}
+
+	@Benchmark
+	public Boolean markerChecker() {
+		FrameBuffer buffer = nextFrame();
+		return receiver.markerChecker(buffer.getWebcamImage(), buffer.getMarkerWorkspace(0), division);
+	}
+
+	@Benchmark
+	public Mat transformMarker() {
+		FrameBuffer buffer = nextFrame();
+		MarkerWorkspace workspace = buffer.getMarkerWorkspace(0);
+		receiver.transformMarker(buffer.getWebcamImage(), workspace);
+		return workspace.getMarkerImage();
+	}
+
+	@Benchmark
+	public SymbolBuffer colorDecorde() {
+		MarkerWorkspace workspace = nextFrame().getMarkerWorkspace(0);
+		Mat markerImage = workspace.getMarkerImage();
+		symbolBuffer.clear();
+		receiver.colorDecorde(markerImage, workspace.readMarkerPixels(), 0, 0, markerImage.height(), markerImage.width(),
+				division, false, workspace.getColorCalibration(), symbolBuffer);
+		return symbolBuffer;
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (FrameBuffer buffer : frames) {
+			buffer.release();
+		}
+	}
+}